@@ -0,0 +1,72 @@
+package meggy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+import meggy.Storage;
+import meggy.TaskList;
+import meggy.Util;
+import meggy.exception.MeggyException;
+import meggy.task.UserTask;
+
+/** Fixtures shared by benchmarks. */
+class BenchmarkUtil {
+    /** Notification channel that drops all messages. */
+    static final Consumer<String> DROP = s -> {
+    };
+
+    /** @deprecated Class with all methods static should not be initialized. */
+    private BenchmarkUtil() {
+    }
+
+    /**
+     * Creates a task of every type in turn, with distinct descriptions and times spread over a year.
+     *
+     * @param i Non-negative. Sequence number of task.
+     * @return The {@code i}-th task.
+     */
+    static UserTask newTask(int i) throws MeggyException {
+        final String date = (i % 28 + 1) + "/" + (i % 12 + 1) + "/2024 " + String.format("%02d", i % 24) + ":00";
+        switch (i % 3) {
+        case 0:
+            return Util.TODO_NEW.apply("read book " + i);
+        case 1:
+            return Util.DDL_NEW.apply("return book " + i + " /by " + date);
+        default:
+            return Util.EVENT_NEW.apply("book club " + i + " /from " + date + " /to next day");
+        }
+    }
+
+    /**
+     * @param size    Non-negative. Number of tasks.
+     * @param backing Non-null. Data structure backing the list.
+     * @return List of the first {@code size} tasks of {@code newTask}.
+     */
+    static TaskList newTaskList(int size, TaskList.Backing backing) throws MeggyException {
+        final TaskList tasks = new TaskList(backing);
+        for (int i = 0; i < size; i++) {
+            tasks.add(newTask(i));
+        }
+        return tasks;
+    }
+
+    /**
+     * @param size   Non-negative. Number of tasks.
+     * @param format Non-null. Format of data file.
+     * @return Temporary data file of the first {@code size} tasks of {@code newTask}. Deleted on exit.
+     */
+    static File newDataFile(int size, Storage.Format format) throws IOException, MeggyException {
+        final File file = newTempFile();
+        new Storage(file, false, format).save(newTaskList(size, TaskList.Backing.ARRAY));
+        return file;
+    }
+
+    /** @return Empty temporary file. Deleted on exit. */
+    static File newTempFile() throws IOException {
+        final File file = Files.createTempFile("meggy-benchmark", ".txt").toFile();
+        file.deleteOnExit();
+        return file;
+    }
+}
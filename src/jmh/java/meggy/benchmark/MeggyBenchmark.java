@@ -0,0 +1,110 @@
+package meggy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meggy.Meggy;
+import meggy.Resource;
+import meggy.Storage;
+import meggy.exception.MeggyException;
+
+/** Commands end to end through {@link Meggy#parseAndGetResponse}, on chatbots with lists of various sizes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeggyBenchmark {
+    /** Number of tasks added per iteration of {@code addTask}, small enough to keep list size about the same. */
+    private static final int ADD_BATCH_SIZE = 1000;
+
+    /**
+     * Adds tasks to a freshly loaded chatbot. Changes are journaled in the background after the iteration, so only the
+     * in-memory work is measured. The score is the time of a batch of {@code ADD_BATCH_SIZE} tasks.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = ADD_BATCH_SIZE)
+    @Measurement(iterations = 10, batchSize = ADD_BATCH_SIZE)
+    public String addTask(Growing state) throws MeggyException {
+        return state.meggy.parseAndGetResponse(Resource.CMD_TODO + " new task " + state.next++);
+    }
+
+    /** Looks up a keyword long enough for the substring index. */
+    @Benchmark
+    public String findIndexed(Loaded state) throws MeggyException {
+        return state.meggy.parseAndGetResponse(Resource.CMD_FIND + " book 4242");
+    }
+
+    /** Looks up a keyword too short for the substring index, so the list is scanned. */
+    @Benchmark
+    public String findScanned(Loaded state) throws MeggyException {
+        return state.meggy.parseAndGetResponse(Resource.CMD_FIND + " 42");
+    }
+
+    /** Looks up a keyword in every task, stopping at the limit. */
+    @Benchmark
+    public String findLimited(Loaded state) throws MeggyException {
+        return state.meggy.parseAndGetResponse(Resource.CMD_FIND + " book " + Resource.KW_LIMIT + " 50");
+    }
+
+    /** Chatbot loaded once, for commands that do not change the list. */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+        private Meggy meggy;
+
+        /** Loads the chatbot from a data file of the given size. */
+        @Setup
+        public void setUp() throws IOException, MeggyException {
+            meggy = new Meggy(BenchmarkUtil.newDataFile(size, Storage.Format.TEXT));
+            meggy.bindUi(BenchmarkUtil.DROP);
+        }
+    }
+
+    /** Chatbot reloaded from the same data file before every iteration, for commands that grow the list. */
+    @State(Scope.Thread)
+    public static class Growing {
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+        private File template;
+        private File dataFile;
+        private Meggy meggy;
+        private int next = 0;
+
+        /** Writes the data file that every iteration starts from. */
+        @Setup
+        public void setUp() throws IOException, MeggyException {
+            template = BenchmarkUtil.newDataFile(size, Storage.Format.TEXT);
+            dataFile = BenchmarkUtil.newTempFile();
+        }
+
+        /** Restores the data file and reloads the chatbot from it, so that every iteration starts at the same size. */
+        @Setup(Level.Iteration)
+        public void load() throws IOException {
+            Files.copy(template.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            meggy = new Meggy(dataFile);
+            meggy.bindUi(BenchmarkUtil.DROP);
+            meggy.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            meggy.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package meggy.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import meggy.MeggyTime;
+
+/**
+ * Date-time parsing, against the reference implementation that tries every format in turn. {@code of} hits
+ * {@code MeggyTime.CACHE} after the first round.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeggyTimeBenchmark {
+    /** Inputs in various formats, and one that is not a date-time. */
+    private static final String[] INPUTS = {
+        "19/01/2038 03:14",
+        "2038-19-01 0314",
+        "03:14 01192038",
+        "1/2/2024 10:00",
+        "next Friday"
+    };
+    private int next = 0;
+
+    @Benchmark
+    public LocalDateTime parseDateTime() {
+        return MeggyTime.parseDateTime(nextInput());
+    }
+
+    @Benchmark
+    public LocalDateTime parseDateTimeByTrial() {
+        return MeggyTime.parseDateTimeByTrial(nextInput());
+    }
+
+    @Benchmark
+    public MeggyTime of() {
+        return MeggyTime.of(nextInput());
+    }
+
+    private String nextInput() {
+        next = next == INPUTS.length - 1 ? 0 : next + 1;
+        return INPUTS[next];
+    }
+}
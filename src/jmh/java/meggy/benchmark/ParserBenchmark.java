@@ -0,0 +1,38 @@
+package meggy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import meggy.Parser;
+import meggy.Util;
+import meggy.task.UserTask;
+
+/** Parsing of command lines into command and args, the first step of every command and of text data file replay. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+    /** Typical lines, including an unknown command and messy whitespace. */
+    private static final String[] LINES = {
+        "todo read book",
+        "deadline return book /by 2024-01-01 10:00",
+        "event  Meeting\t/from 2pm /to 4pm ",
+        "MARK 3",
+        "list",
+        "hello there"
+    };
+    private int next = 0;
+
+    /** Parses the next line, cycling through all of them. */
+    @Benchmark
+    public Parser.JobAndArg<UserTask> parseJobAndArg() {
+        next = next == LINES.length - 1 ? 0 : next + 1;
+        return Parser.parseJobAndArg(Util.TASK_CMD_TO_NEW, LINES[next]);
+    }
+}
@@ -0,0 +1,54 @@
+package meggy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import meggy.Meggy;
+import meggy.Storage;
+import meggy.TaskList;
+import meggy.exception.MeggyException;
+
+/** Writing a snapshot of the whole list, and loading a chatbot from a snapshot, in each data file format. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    @Param({"TEXT", "BINARY"})
+    public Storage.Format format;
+    private TaskList tasks;
+    private Storage saveStorage;
+    private File loadFile;
+
+    /** Builds the list to save, and a data file of the same size to load. */
+    @Setup
+    public void setUp() throws IOException, MeggyException {
+        tasks = BenchmarkUtil.newTaskList(size, TaskList.Backing.ARRAY);
+        saveStorage = new Storage(BenchmarkUtil.newTempFile(), false, format);
+        loadFile = BenchmarkUtil.newDataFile(size, format);
+    }
+
+    @Benchmark
+    public void save() throws MeggyException {
+        saveStorage.save(tasks);
+    }
+
+    /** Loads the way the chatbot starts up, in parallel for large text files. */
+    @Benchmark
+    public Meggy load() {
+        final Meggy meggy = new Meggy(new Storage(loadFile, true, format));
+        meggy.bindUi(BenchmarkUtil.DROP);
+        return meggy;
+    }
+}
@@ -0,0 +1,35 @@
+package meggy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import meggy.exception.MeggyException;
+import meggy.task.DdlTask;
+import meggy.task.EventTask;
+
+/** Parsing of task creation args into tasks, with times as found in data files, so that times hit the cache. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TaskCreationBenchmark {
+    @Benchmark
+    public DdlTask ddlOf() throws MeggyException {
+        return DdlTask.of("return book /by 19/01/2038 03:14");
+    }
+
+    @Benchmark
+    public EventTask eventOf() throws MeggyException {
+        return EventTask.of("book club /from 19/01/2038 03:14 /to 19/01/2038 05:14");
+    }
+
+    @Benchmark
+    public EventTask eventOfCustomizedTimes() throws MeggyException {
+        return EventTask.of("book club /from after lunch /to before dinner");
+    }
+}
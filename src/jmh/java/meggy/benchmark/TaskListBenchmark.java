@@ -0,0 +1,64 @@
+package meggy.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import meggy.TaskList;
+import meggy.exception.MeggyException;
+import meggy.task.UserTask;
+
+/**
+ * Whole-list rendering for 'list' and snapshots, and random access, insertion and removal, for each backing of
+ * {@link TaskList}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskListBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    @Param({"ARRAY", "TREE"})
+    public TaskList.Backing backing;
+    private TaskList tasks;
+    private UserTask extraTask;
+    private final Random rand = new Random(0);
+
+    /** Builds a list of the given size and backing, and a task not in it. */
+    @Setup
+    public void setUp() throws MeggyException {
+        tasks = BenchmarkUtil.newTaskList(size, backing);
+        extraTask = BenchmarkUtil.newTask(size);
+    }
+
+    @Benchmark
+    public String render() {
+        return tasks.toString();
+    }
+
+    @Benchmark
+    public String recreateCmds() {
+        return tasks.recreateCmds();
+    }
+
+    @Benchmark
+    public UserTask randomGet() {
+        return tasks.get(rand.nextInt(size));
+    }
+
+    /** Inserts a task at a random index and removes it again, keeping list size. */
+    @Benchmark
+    public UserTask randomInsertAndRemove() {
+        final int idx = rand.nextInt(size);
+        tasks.add(idx, extraTask);
+        return tasks.remove(idx);
+    }
+}
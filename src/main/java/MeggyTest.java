@@ -1,22 +1,70 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
+import meggy.BatchRunner;
+import meggy.IndexedTreeList;
+import meggy.LruCache;
 import meggy.Meggy;
 import meggy.MeggyTime;
+import meggy.Parser;
 import meggy.Resource;
+import meggy.SaveScheduler;
+import meggy.Session;
+import meggy.Storage;
 import meggy.TaskList;
 import meggy.Util;
 import meggy.exception.Function;
 import meggy.exception.MeggyException;
+import meggy.exception.MeggyIobException;
+import meggy.exception.MeggyNfException;
+import meggy.exception.MeggyNoArgException;
+import meggy.server.LoadClient;
+import meggy.server.MeggyHttpServer;
+import meggy.server.MeggyServer;
+import meggy.server.Responder;
+import meggy.server.TenantManager;
 import meggy.task.DdlTask;
 import meggy.task.EventTask;
 import meggy.task.UserTask;
@@ -96,14 +144,16 @@ public class MeggyTest {
             final String data = a.recreateCmd();
             final T b = newTask.apply(data.substring(data.indexOf(' ') + 1));
             assertEquals(a, b, s);
+            assertEquals(a.hashCode(), b.hashCode(), s);
         } catch (MeggyException e) {
             throw new RuntimeException(s, e);
         }
     }
 
-    private static void randStorageTest(File storageFile) throws MeggyException {
+    private static void randStorageTest(File storageFile, boolean isJournaled, Storage.Format format)
+            throws MeggyException {
         final int listLenMax = 50;
-        final Meggy m1 = new Meggy(storageFile);
+        final Meggy m1 = new Meggy(new Storage(storageFile, isJournaled, format));
         m1.bindUi(DROP);
 
         final TaskList taskList = new TaskList();
@@ -124,9 +174,21 @@ public class MeggyTest {
             final String line = (RAND.nextBoolean() ? Resource.CMD_MARK : Resource.CMD_UNMK) + ' ' + idx;
             m1.parseAndGetResponse(line);
         }
-        final Meggy m2 = new Meggy(storageFile);
+        for (int i = 0; i < len / 4; i++) {
+            m1.parseAndGetResponse(Resource.CMD_DEL + ' ' + (RAND.nextInt(len - i) + 1));
+        }
+        // Format of data file is detected regardless of storage format.
+        final Meggy m2 = new Meggy(storageFile, isJournaled);
         m2.bindUi(DROP);
         assert (m1.equals(m2));
+        assertEquals(m1.parseAndGetResponse(Resource.CMD_LIST), m2.parseAndGetResponse(Resource.CMD_LIST));
+        final File textFile = new File(storageFile.getPath() + ".export");
+        m2.exportText(textFile);
+        final Meggy m3 = new Meggy(textFile, false);
+        m3.bindUi(DROP);
+        assert (m1.equals(m3));
+        assertEquals(m1.parseAndGetResponse(Resource.CMD_LIST), m3.parseAndGetResponse(Resource.CMD_LIST));
+        textFile.delete();
         storageFile.delete();
     }
 
@@ -141,6 +203,151 @@ public class MeggyTest {
         }
         MeggyTime b = MeggyTime.of(s);
         assertEquals(a, b, s);
+        assertEquals(a.hashCode(), b.hashCode(), s);
+    }
+
+    /** @return Random string that looks like a date-time, possibly with out-of-range or malformed fields. */
+    private static String randDateTimeLike() {
+        if (RAND.nextInt(4) == 0) {
+            final String alphabet = "0123456789/-:+ ";
+            final char[] chars = new char[1 + RAND.nextInt(20)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet.charAt(RAND.nextInt(RAND.nextBoolean() ? 10 : alphabet.length()));
+            }
+            return new String(chars);
+        }
+        final String[] zeros = {"", "", "0", "00"};
+        final String[] fields = new String[3];
+        for (int i = 0; i < fields.length; i++) {
+            final String prefix = RAND.nextInt(8) == 0 ? (RAND.nextBoolean() ? "+" : "-") : "";
+            final int value = RAND.nextInt(4) == 0 ? RAND.nextInt(100000) : RAND.nextInt(35);
+            fields[i] = prefix + zeros[RAND.nextInt(zeros.length)] + value;
+        }
+        final String sep = new String[]{"/", "-", ""}[RAND.nextInt(3)];
+        final String date = String.join(sep, fields);
+        final String time = String.format("%02d", RAND.nextInt(26)) + (RAND.nextBoolean() ? ":" : "")
+                + String.format("%02d", RAND.nextInt(62));
+        return RAND.nextInt(8) == 0 ? time + ' ' + date : date + ' ' + time;
+    }
+
+    @Test
+    public void dateTimeParsingTest() {
+        final String[] edgeCases = {"24:00 1/1/2023", "1/1/2023 24:00", "31/2/2023 12:00", "002/03/2023 1200",
+            "12/13/2023 12:00", "13/12/2023 12:00", "0/1/2023 12:00", "1/1/+2023 12:00", "2023/31/12 23:59",
+            "311220230000 0000", "31122023 0000", "20233112 0000", "12312023 0000", "20231231 0000", "+120231231 0000",
+            "1/1/0 00:00", "1-1-2023 00:00", "1 1 2023 00:00", "", " ", "1/1/2023", "1/1/2023  00:00"};
+        for (String s : edgeCases) {
+            assertEquals(MeggyTime.parseDateTimeByTrial(s), MeggyTime.parseDateTime(s), s);
+        }
+        for (int i = 0; i < N_LOOP * 5; i++) {
+            final String s = randDateTimeLike();
+            assertEquals(MeggyTime.parseDateTimeByTrial(s), MeggyTime.parseDateTime(s), s);
+        }
+    }
+
+    @Test
+    public void lruCacheTest() {
+        final ArrayList<Integer> evicted = new ArrayList<>();
+        final LruCache<Integer, String> cache = new LruCache<>(3, (k, v) -> evicted.add(k));
+        for (int i = 0; i < 3; i++) {
+            cache.computeIfAbsent(i, String::valueOf);
+        }
+        assertEquals("0", cache.computeIfAbsent(0, k -> "recomputed")); // 0 becomes most recently used
+        cache.computeIfAbsent(3, String::valueOf);
+        assertEquals(List.of(1), evicted);
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+        cache.setCapacity(1);
+        assertEquals(List.of(1, 2, 0), evicted);
+        assertEquals(1, cache.size());
+        assertEquals("3", cache.get(3));
+        cache.setCapacity(3);
+        cache.computeIfAbsent(4, String::valueOf);
+        cache.computeIfAbsent(5, String::valueOf);
+        assertEquals(0, cache.evictWhile((k, v) -> k != 3));
+        assertEquals(2, cache.evictWhile((k, v) -> k < 5));
+        assertEquals(List.of(1, 2, 0, 3, 4), evicted);
+        assertEquals("5", cache.get(5));
+        final long nLookups = cache.getHitCount() + cache.getMissCount();
+        assertNull(cache.peek(6));
+        assertNull(cache.putIfAbsent(6, "6"));
+        assertEquals("6", cache.putIfAbsent(6, "again"));
+        assertEquals("6", cache.peek(6));
+        assertEquals(nLookups, cache.getHitCount() + cache.getMissCount()); // Neither counts as a lookup.
+
+        final String s = randString();
+        assertSame(MeggyTime.of(s), MeggyTime.of(' ' + s + ' '));
+    }
+
+    @Test
+    public void indexedTreeListTest() {
+        final ArrayList<Integer> expected = new ArrayList<>();
+        final IndexedTreeList<Integer> actual = new IndexedTreeList<>();
+        for (int i = 0; i < N_LOOP * 10; i++) {
+            final int size = expected.size();
+            final int op = RAND.nextInt(5);
+            if (size > 0 && op < 2) {
+                final int idx = RAND.nextInt(size);
+                assertEquals(expected.remove(idx), actual.remove(idx));
+            } else if (size > 0 && op == 2) {
+                final int idx = RAND.nextInt(size);
+                assertEquals(expected.set(idx, i), actual.set(idx, i));
+            } else {
+                final int idx = RAND.nextInt(size + 1);
+                expected.add(idx, i);
+                actual.add(idx, i);
+            }
+            assertEquals(expected.size(), actual.size());
+            if (expected.size() > 0) {
+                final int idx = RAND.nextInt(expected.size());
+                assertEquals(expected.get(idx), actual.get(idx));
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected, new ArrayList<>(actual));
+    }
+
+    @Test
+    public void findTest() throws MeggyException {
+        findTest(new TaskList(TaskList.Backing.ARRAY));
+        findTest(new TaskList(TaskList.Backing.TREE));
+    }
+
+    private static void findTest(TaskList tasks) throws MeggyException {
+        final ArrayList<UserTask> mirror = new ArrayList<>();
+        final Supplier<String> randDesc = () -> {
+            final char[] chars = new char[1 + RAND.nextInt(8)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = "abc ".charAt(RAND.nextInt(i == 0 ? 3 : 4));
+            }
+            return new String(chars);
+        };
+        for (int i = 0; i < N_LOOP; i++) {
+            final int size = tasks.size();
+            final int op = RAND.nextInt(10);
+            final UserTask task = Util.TODO_NEW.apply(randDesc.get());
+            if (size > 0 && op == 0) {
+                final int idx = RAND.nextInt(size);
+                assertEquals(mirror.remove(idx), tasks.remove(idx));
+            } else if (size > 0 && op == 1) {
+                final int idx = RAND.nextInt(size);
+                assertEquals(mirror.set(idx, task), tasks.set(idx, task));
+            } else {
+                final int idx = op == 2 ? RAND.nextInt(size + 1) : size;
+                mirror.add(idx, task);
+                tasks.add(idx, task);
+            }
+            final String query = randDesc.get();
+            final ArrayList<UserTask> expected = new ArrayList<>();
+            for (UserTask t : tasks) {
+                if (t.desc.contains(query)) {
+                    expected.add(t);
+                }
+            }
+            assertEquals(expected, tasks.find(query), query);
+        }
+        assertEquals(mirror, tasks);
     }
 
     @Test
@@ -175,15 +382,982 @@ public class MeggyTest {
         final int nTest = N_LOOP / 200 * N_CORE;
         IntStream.range(0, nTest).parallel().forEach(iTest -> {
             try {
-                randStorageTest(new File(TEST_DIR, iTest + ".txt"));
+                randStorageTest(new File(TEST_DIR, iTest + ".txt"), iTest % 2 == 0,
+                        Storage.Format.values()[iTest / 2 % 2]);
             } catch (MeggyException e) {
                 throw new RuntimeException(e);
             }
         });
     }
 
+    @Test
+    public void concurrentCommandTest() throws Exception {
+        final File storageFile = new File(TEST_DIR, "concurrent.txt");
+        storageFile.delete();
+        final Meggy meggy = new Meggy(storageFile);
+        meggy.bindUi(DROP);
+        final int nThread = Math.max(4, N_CORE * 2);
+        final int nCmd = N_LOOP / 4;
+        final Set<String> added = ConcurrentHashMap.newKeySet();
+        final Set<String> deleted = ConcurrentHashMap.newKeySet();
+        final ForkJoinPool pool = new ForkJoinPool(nThread);
+        pool.submit(() -> IntStream.range(0, nThread).parallel().forEach(iThread -> {
+            for (int i = 0; i < nCmd; i++) {
+                final String desc = "t" + iThread + '-' + i;
+                final int idx = RAND.nextInt(50) + 1;
+                try {
+                    switch (RAND.nextInt(6)) {
+                    case 0:
+                    case 1:
+                        meggy.parseAndGetResponse(Resource.CMD_TODO + ' ' + desc);
+                        added.add(desc);
+                        break;
+                    case 2:
+                        final String response = meggy.parseAndGetResponse(Resource.CMD_DEL + ' ' + idx);
+                        deleted.add(response.split("\n")[1].substring(Resource.TASK_STRING_INDENT.length() + 7));
+                        break;
+                    case 3:
+                        meggy.parseAndGetResponse((RAND.nextBoolean() ? Resource.CMD_MARK : Resource.CMD_UNMK) + ' '
+                                + idx);
+                        break;
+                    case 4:
+                        meggy.parseAndGetResponse(Resource.CMD_FIND + " t" + iThread);
+                        break;
+                    default:
+                        meggy.parseAndGetResponse(Resource.CMD_LIST);
+                    }
+                } catch (MeggyIobException e) {
+                    // Index beyond the list size at that moment
+                } catch (MeggyException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        })).get();
+        pool.shutdown();
+
+        final Set<String> expected = new HashSet<>(added);
+        expected.removeAll(deleted);
+        assertEquals(added.size(), expected.size() + deleted.size());
+        final String list = meggy.parseAndGetResponse(Resource.CMD_LIST);
+        final Set<String> actual = new HashSet<>();
+        for (String line : list.substring(Resource.NOTIF_LIST.length()).split("\n")) {
+            if (!line.isEmpty()) {
+                actual.add(line.substring(line.indexOf('.') + 1 + 7));
+            }
+        }
+        assertEquals(expected, actual);
+        // The journal replays in the same order as the changes were made.
+        final Meggy reloaded = new Meggy(storageFile);
+        reloaded.bindUi(DROP);
+        assertEquals(meggy, reloaded);
+        assertEquals(list, reloaded.parseAndGetResponse(Resource.CMD_LIST));
+        storageFile.delete();
+    }
+
+    @Test
+    public void sessionTest() throws Exception {
+        final Meggy meggy = new Meggy(new File(TEST_DIR, "session.txt"));
+        meggy.bindUi(DROP);
+        meggy.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        final int nSession = Math.max(4, N_CORE * 2);
+        final int nCmd = N_LOOP / 8;
+        final ArrayList<List<String>> replies = new ArrayList<>();
+        final ArrayList<CompletableFuture<String>> lasts = new ArrayList<>();
+        for (int iSession = 0; iSession < nSession; iSession++) {
+            final Session session = new Session(meggy);
+            final List<String> reply = Collections.synchronizedList(new ArrayList<>());
+            replies.add(reply);
+            CompletableFuture<String> last = null;
+            for (int i = 0; i < nCmd; i++) {
+                final String line = i % 10 == 9 ? Resource.CMD_DEL + " 0"
+                        : Resource.CMD_TODO + " s" + iSession + '-' + i;
+                last = session.submit(line);
+                last.whenComplete((r, e) -> reply.add(e == null ? r : e.getMessage()));
+            }
+            lasts.add(session.submit(Resource.CMD_FIND + " s" + iSession + '-'));
+        }
+        for (int iSession = 0; iSession < nSession; iSession++) {
+            final String found = lasts.get(iSession).get();
+            final List<String> reply = replies.get(iSession);
+            assertEquals(nCmd, reply.size());
+            final StringBuilder expected = new StringBuilder(Resource.NOTIF_FIND);
+            int nFound = 0;
+            for (int i = 0; i < nCmd; i++) {
+                // Replies are in submission order: every 10th is an error, the others echo the added task.
+                if (i % 10 == 9) {
+                    assert reply.get(i).startsWith(Resource.ERR_BASE) : reply.get(i);
+                    continue;
+                }
+                final String desc = "s" + iSession + '-' + i;
+                assert reply.get(i).contains(desc + '\n') : reply.get(i);
+                expected.append(Resource.fmtIdx(nFound++)).append("[T][ ] ").append(desc).append('\n');
+            }
+            assertEquals(expected.toString(), found);
+        }
+        meggy.close();
+
+        // Commands submitted right after binding run on the loaded task list.
+        final Meggy reloaded = new Meggy(new File(TEST_DIR, "session.txt"));
+        final Session session = new Session(reloaded);
+        final List<String> notifs = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<Void> loaded = session.bindUi(notifs::add);
+        final CompletableFuture<String> found = session.submit(Resource.CMD_FIND + " s0-0");
+        loaded.get();
+        assertEquals(List.of(Resource.GREETINGS), notifs);
+        assertEquals(Resource.NOTIF_FIND + Resource.fmtIdx(0) + "[T][ ] s0-0\n", found.get());
+
+        // An error thrown by a sink fails only its own command, and later commands still run.
+        final Error sinkErr = new Error("sink");
+        final CompletableFuture<Void> failed = session.submit(Resource.CMD_LIST, s -> {
+            throw sinkErr;
+        });
+        final CompletableFuture<String> after = session.submit(Resource.CMD_FIND + " s0-0");
+        assertSame(sinkErr, assertThrows(Exception.class, failed::get).getCause());
+        assertEquals(found.get(), after.get());
+        reloaded.close();
+        new File(TEST_DIR, "session.txt").delete();
+    }
+
+    @Test
+    public void serverTest() throws Exception {
+        final File storageFile = new File(TEST_DIR, "server.txt");
+        storageFile.delete();
+        final Meggy meggy = new Meggy(storageFile);
+        final Responder responder = new Responder(meggy, DROP);
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        // Fewer slots than clients, so that some clients wait in backlog.
+        final int nClient = Math.max(4, N_CORE * 2);
+        final int nCmd = N_LOOP / 40;
+        try (MeggyServer server = new MeggyServer(responder, address, nClient / 2, nClient, 64, 60_000, DROP);
+                MeggyHttpServer httpServer = new MeggyHttpServer(responder, address, 1, 64)) {
+            server.start();
+            httpServer.start();
+            final LoadClient.Result result = LoadClient.run(address.getHostString(), server.getPort(), nClient, nCmd);
+            assertEquals(nClient * nCmd, result.nCmd);
+            assertEquals(0, result.nError);
+            assertTrue(result.percentileNanos(50) <= result.percentileNanos(100));
+
+            int nTodo = 0;
+            try (Socket socket = new Socket(address.getAddress(), server.getPort())) {
+                final BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                final OutputStream out = socket.getOutputStream();
+                out.write(("find load0-\r\nmark x\n" + "x".repeat(65) + "\n" + "x".repeat(64) + "\r\nbye\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                final StringBuilder expected = new StringBuilder(Resource.NOTIF_FIND);
+                for (int i = 0; i < nCmd; i++) {
+                    final String cmd = LoadClient.fmtCmd(0, i);
+                    if (cmd.startsWith(Resource.CMD_TODO)) {
+                        expected.append(Resource.fmtIdx(nTodo++)).append("[T][ ] ")
+                                .append(cmd.substring(Resource.CMD_TODO.length() + 1)).append('\n');
+                    }
+                }
+                // Every client marks whichever task is first in list.
+                assertEquals(expected.toString(), LoadClient.readReply(in).replace("[X]", "[ ]"));
+                // Usage hints sent aside reach the client that caused them.
+                final String markReply = LoadClient.readReply(in);
+                assertTrue(markReply.startsWith(Resource.NOTIF_USAGE), markReply);
+                assertTrue(markReply.contains(Resource.ERR_BASE), markReply);
+                assertEquals(Resource.ERR_BASE + Resource.ERR_TOO_LONG, LoadClient.readReply(in));
+                assertEquals(Resource.ERR_BASE + Resource.fmtErrUnknownCmd("x".repeat(64)), LoadClient.readReply(in));
+                assertEquals(Resource.FAREWELL, LoadClient.readReply(in));
+                assertNull(LoadClient.readReply(in));
+            }
+
+            final URL url = new URL("http", address.getHostString(), httpServer.getPort(), "/");
+            final HttpURLConnection post = (HttpURLConnection) url.openConnection();
+            post.setRequestMethod("POST");
+            post.setDoOutput(true);
+            try (OutputStream out = post.getOutputStream()) {
+                out.write("list 1 1\r\n\n \nfind nothing\n".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(HttpURLConnection.HTTP_OK, post.getResponseCode());
+            final String body = new String(post.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(Resource.fmtListPage(0, 1, nClient * nTodo) + Resource.fmtIdx(0) + "[T][X] ",
+                    body.substring(0, body.indexOf("] ") + 2));
+            assertTrue(body.endsWith(Resource.NOTIF_FIND), body);
+            final HttpURLConnection get = (HttpURLConnection) url.openConnection();
+            assertEquals(HttpURLConnection.HTTP_BAD_METHOD, get.getResponseCode());
+            final HttpURLConnection empty = (HttpURLConnection) url.openConnection();
+            empty.setRequestMethod("POST");
+            empty.setDoOutput(true);
+            try (OutputStream out = empty.getOutputStream()) {
+                out.write("\n".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, empty.getResponseCode());
+        }
+        meggy.close();
+        storageFile.delete();
+    }
+
+    @Test
+    public void tenantTest() throws Exception {
+        assertEquals("alice-_9", TenantManager.toUserName("Alice-_9"));
+        assertNull(TenantManager.toUserName(""));
+        assertNull(TenantManager.toUserName("../alice"));
+        assertNull(TenantManager.toUserName("a".repeat(Util.USER_NAME_MAX_LENGTH + 1)));
+
+        final File dir = new File(TEST_DIR, "tenants");
+        final int nUser = 8;
+        final int nCmd = N_LOOP / 40;
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        // Fewer resident than active users, so that users are evicted and reloaded all the time.
+        try (TenantManager tenants = new TenantManager(dir, 2, 60_000, 0.99, errors::add)) {
+            for (int i = 0; i < nUser; i++) {
+                new File(dir, "u" + i + ".txt").delete();
+            }
+            assertTrue(tenants.respond("u0", Resource.CMD_TODO + " first").startsWith(Resource.NOTIF_ADD));
+            tenants.respond("u1", Resource.CMD_LIST);
+            tenants.respond("u2", Resource.CMD_LIST);
+            assertTrue(tenants.respond("u0", Resource.CMD_LIST).contains("first\n"));
+            TenantManager.Stats stats = tenants.getStats();
+            assertEquals(2, stats.nResident);
+            assertEquals(4, stats.nLoads);
+            assertEquals(2, stats.nEvictions);
+            assertEquals(0, stats.nHits);
+            tenants.respond("u0", Resource.CMD_DEL + " 1");
+
+            final ForkJoinPool pool = new ForkJoinPool(nUser * 2);
+            pool.submit(() -> IntStream.range(0, nUser * 2).parallel().forEach(iThread -> {
+                final String user = "u" + iThread % nUser;
+                for (int i = 0; i < nCmd; i++) {
+                    final String reply = tenants.respond(user, Resource.CMD_TODO + " t" + iThread + '-' + i);
+                    assert reply.startsWith(Resource.NOTIF_ADD) : reply;
+                }
+            })).get();
+            pool.shutdown();
+            stats = tenants.getStats();
+            assertTrue(stats.nMisses >= stats.nLoads, stats.toString()); // Threads missing at once share a load.
+            assertEquals(stats.nLoads, stats.nEvictions + stats.nResident);
+            assertTrue(stats.getHitRate() > 0 && stats.getHitRate() < 1, stats.toString());
+        }
+        assertEquals(List.of(), errors);
+        // Every change survives eviction.
+        for (int iUser = 0; iUser < nUser; iUser++) {
+            final Meggy meggy = new Meggy(new File(dir, "u" + iUser + ".txt"));
+            meggy.bindUi(DROP);
+            final String list = meggy.parseAndGetResponse(Resource.CMD_LIST);
+            assertEquals(nCmd * 2, list.split("\n").length - 1);
+            for (int iThread = iUser; iThread < nUser * 2; iThread += nUser) {
+                for (int i = 0; i < nCmd; i++) {
+                    assertTrue(list.contains("] t" + iThread + '-' + i + '\n'), list);
+                }
+            }
+        }
+
+        try (TenantManager tenants = new TenantManager(dir, nUser, 1, 0.99, DROP)) {
+            tenants.respond("u0", Resource.CMD_LIST);
+            for (int i = 0; i < 1000 && tenants.getStats().nResident > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, tenants.getStats().nResident); // Evicted once idle.
+
+            final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+            try (MeggyServer server = new MeggyServer(tenants, address, 4, 4, 64, 60_000, DROP);
+                    MeggyHttpServer httpServer = new MeggyHttpServer(tenants, address, 4, 64)) {
+                server.start();
+                httpServer.start();
+                for (String name : new String[]{"U1", "no/such"}) {
+                    try (Socket socket = new Socket(address.getAddress(), server.getPort())) {
+                        final BufferedReader in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        socket.getOutputStream().write((name + "\nfind t1-0\n").getBytes(StandardCharsets.UTF_8));
+                        if (name.equals("U1")) {
+                            assertEquals(Resource.GREETINGS, LoadClient.readReply(in));
+                            assertEquals(Resource.NOTIF_FIND + Resource.fmtIdx(0) + "[T][ ] t1-0\n",
+                                    LoadClient.readReply(in));
+                        } else {
+                            assertEquals(Resource.ERR_BASE + Resource.ERR_USER_NAME, LoadClient.readReply(in));
+                            assertNull(LoadClient.readReply(in));
+                        }
+                    }
+                }
+                final HttpURLConnection post = (HttpURLConnection) new URL("http", address.getHostString(),
+                        httpServer.getPort(), "/u2").openConnection();
+                post.setRequestMethod("POST");
+                post.setDoOutput(true);
+                try (OutputStream out = post.getOutputStream()) {
+                    out.write("find t2-0".getBytes(StandardCharsets.UTF_8));
+                }
+                assertEquals(Resource.NOTIF_FIND + Resource.fmtIdx(0) + "[T][ ] t2-0\n",
+                        new String(post.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+                final HttpURLConnection metrics = (HttpURLConnection) new URL("http", address.getHostString(),
+                        httpServer.getPort(), "/metrics").openConnection();
+                assertEquals(HttpURLConnection.HTTP_OK, metrics.getResponseCode());
+                assertTrue(new String(metrics.getInputStream().readAllBytes(), StandardCharsets.UTF_8)
+                        .startsWith("resident "));
+            }
+        }
+        for (int i = 0; i < nUser; i++) {
+            new File(dir, "u" + i + ".txt").delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void batchTest() throws Exception {
+        final List<String> cmds = new ArrayList<>();
+        for (int i = 0; i < N_LOOP; i++) {
+            cmds.add(Resource.CMD_TODO + " b" + i);
+        }
+        // Carriage return as the last byte of the first read, and line feed as the first of the next.
+        final int crOffset = Util.BATCH_BUFFER_SIZE - 1;
+        final int blankLength = " \n\n".length();
+        final int prefixLength = cmds.stream().mapToInt(cmd -> cmd.length() + 1).sum() + N_LOOP / 100 * blankLength;
+        final String padded = Resource.CMD_TODO + ' ';
+        cmds.add(padded + "p".repeat(crOffset - prefixLength - padded.length()));
+        cmds.add(Resource.CMD_TODO + ' ' + "l".repeat(Util.BATCH_BUFFER_SIZE * 3 / 2)); // Longer than buffer.
+        cmds.add(Resource.CMD_MARK + " 2");
+        cmds.add(Resource.CMD_MARK + " 0");
+        cmds.add(Resource.CMD_LIST);
+        cmds.add(Resource.CMD_EXIT);
+        final StringBuilder script = new StringBuilder();
+        for (int i = 0; i < cmds.size(); i++) {
+            script.append(cmds.get(i)).append(i == N_LOOP ? "\r\n" : i % 3 == 0 ? "\r" : "\n");
+            script.append(i % 100 == 0 ? " \n\n" : ""); // Blank lines.
+        }
+        script.append(Resource.CMD_TODO).append(" after bye");
+        final byte[] bytes = script.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals((byte) '\r', bytes[crOffset]);
+
+        final File refFile = new File(TEST_DIR, "batchRef.txt");
+        refFile.delete();
+        final Meggy ref = new Meggy(refFile);
+        final StringBuilder expected = new StringBuilder();
+        ref.bindUi(msg -> { // Usage notifications are part of the output, but not greetings.
+            if (!msg.equals(Resource.GREETINGS)) {
+                expected.append(msg);
+            }
+        });
+        for (String cmd : cmds) {
+            try {
+                expected.append(ref.parseAndGetResponse(cmd));
+            } catch (MeggyException e) {
+                expected.append(e.getMessage());
+            }
+        }
+        final String expectedList = ref.parseAndGetResponse(Resource.CMD_LIST);
+
+        final File dataFile = new File(TEST_DIR, "batch.txt");
+        final File scriptFile = new File(TEST_DIR, "batchScript.txt");
+        Files.write(scriptFile.toPath(), bytes);
+        for (boolean isScriptFile : new boolean[]{true, false}) {
+            dataFile.delete();
+            final Meggy meggy = new Meggy(dataFile);
+            final StringWriter out = new StringWriter();
+            final BatchRunner runner = new BatchRunner(meggy, out, false);
+            if (isScriptFile) {
+                runner.run(scriptFile);
+            } else {
+                runner.run(Channels.newChannel(new ByteArrayInputStream(bytes)));
+            }
+            assertEquals(cmds.size(), runner.getCmdCount());
+            assertEquals(1, runner.getErrorCount());
+            assertEquals(expected.toString(), out.toString());
+            runner.finish(true, System.nanoTime());
+            assertTrue(out.toString().startsWith(expected + "Ran " + cmds.size() + " commands (1 failed)"));
+            final Meggy saved = new Meggy(dataFile);
+            saved.bindUi(DROP);
+            assertEquals(expectedList, saved.parseAndGetResponse(Resource.CMD_LIST));
+        }
+
+        dataFile.delete();
+        final StringWriter quietOut = new StringWriter();
+        final BatchRunner quiet = new BatchRunner(new Meggy(dataFile), quietOut, true);
+        final String noExit = String.join("\n", cmds.subList(0, N_LOOP)) + '\n' + Resource.CMD_MARK + " 0\n";
+        quiet.run(Channels.newChannel(new ByteArrayInputStream(noExit.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(N_LOOP + 1, quiet.getCmdCount());
+        assertEquals(1, quiet.getErrorCount());
+        assertFalse(dataFile.exists() && dataFile.length() > 0); // Nothing saved until the end.
+        quiet.finish(false, System.nanoTime());
+        assertEquals("", quietOut.toString());
+        final Meggy reloaded = new Meggy(dataFile);
+        reloaded.bindUi(DROP);
+        assertEquals(N_LOOP, reloaded.parseAndGetResponse(Resource.CMD_LIST).split("\n").length - 1);
+        dataFile.delete();
+        refFile.delete();
+        scriptFile.delete();
+    }
+
     @Test
     public void storageTest() throws MeggyException {
-        randStorageTest(new File(TEST_DIR, ".txt"));
+        randStorageTest(new File(TEST_DIR, ".txt"), false, Storage.Format.TEXT);
+    }
+
+    @Test
+    public void journalStorageTest() throws MeggyException {
+        randStorageTest(new File(TEST_DIR, "journal.txt"), true, Storage.Format.TEXT);
+    }
+
+    @Test
+    public void binaryStorageTest() throws MeggyException {
+        randStorageTest(new File(TEST_DIR, "binary.bin"), false, Storage.Format.BINARY);
+        randStorageTest(new File(TEST_DIR, "binaryJournal.bin"), true, Storage.Format.BINARY);
+    }
+
+    @Test
+    public void corruptBinaryTest() throws IOException, MeggyException {
+        final File storageFile = new File(TEST_DIR, "corrupt.bin");
+        storageFile.delete();
+        final Meggy m1 = new Meggy(new Storage(storageFile, true, Storage.Format.BINARY));
+        m1.bindUi(DROP);
+        final String longDesc = "l".repeat(100_000); // Longer than a chunk of string reading.
+        m1.parseAndGetResponse(Resource.CMD_TODO + ' ' + longDesc);
+        m1.parseAndGetResponse(Resource.CMD_TODO + " short");
+        final byte[] data = Files.readAllBytes(storageFile.toPath());
+        // Command record whose string length claims almost 2 GB.
+        final byte[] corrupt = Arrays.copyOf(data, data.length + 9);
+        corrupt[data.length] = 4;
+        corrupt[data.length + 1] = 0x7f;
+        Files.write(storageFile.toPath(), corrupt);
+
+        final List<String> notifs = new ArrayList<>();
+        final Meggy m2 = new Meggy(new Storage(storageFile, true, Storage.Format.BINARY));
+        m2.bindUi(notifs::add);
+        assertEquals(m1, m2);
+        assertTrue(notifs.stream().anyMatch(n -> n.contains(Util.ERROR_WRONG_FILE_0)), notifs.toString());
+        storageFile.delete();
+    }
+
+    @Test
+    public void lineSeparatorStorageTest() throws IOException, MeggyException {
+        final File storageFile = new File(TEST_DIR, "separators.txt");
+        final String[] lines = {todoInput.get(), ddlInput.get(), eventInput.get()};
+        Files.writeString(storageFile.toPath(), Resource.CMD_TODO + ' ' + lines[0] + "\r\n" + Resource.CMD_DDL + ' '
+                + lines[1] + '\r' + Resource.CMD_EVENT + ' ' + lines[2] + '\n' + Resource.CMD_MARK + " 2");
+        final Meggy m1 = new Meggy(storageFile, false);
+        m1.bindUi(DROP);
+        final Meggy m2 = new Meggy(new File(TEST_DIR, "separators2.txt"), false);
+        m2.parseAndGetResponse(Resource.CMD_TODO + ' ' + lines[0]);
+        m2.parseAndGetResponse(Resource.CMD_DDL + ' ' + lines[1]);
+        m2.parseAndGetResponse(Resource.CMD_EVENT + ' ' + lines[2]);
+        m2.parseAndGetResponse(Resource.CMD_MARK + " 2");
+        assertEquals(m2.parseAndGetResponse(Resource.CMD_LIST), m1.parseAndGetResponse(Resource.CMD_LIST));
+        storageFile.delete();
+        new File(TEST_DIR, "separators2.txt").delete();
+    }
+
+    @Test
+    public void parallelLoadTest() throws IOException, MeggyException {
+        final File storageFile = new File(TEST_DIR, "parallel.txt");
+        final File expectedFile = new File(TEST_DIR, "parallel2.txt");
+        expectedFile.delete();
+        final Meggy expected = new Meggy(expectedFile, false);
+        expected.bindUi(DROP);
+        // Never save expected result.
+        expected.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        final StringBuilder data = new StringBuilder();
+        final ArrayList<String> taskLines = new ArrayList<>();
+        while (data.length() < Util.PARALLEL_LOAD_MIN_SIZE * 2) {
+            final String line;
+            final int kind = RAND.nextInt(10);
+            if (kind < 6 || taskLines.isEmpty()) {
+                final int j = RAND.nextInt(userTaskCmds.length);
+                line = userTaskCmds[j] + ' ' + userTaskRandInputs[j].get();
+                taskLines.add(line);
+            } else if (kind == 6) {
+                line = taskLines.get(RAND.nextInt(taskLines.size())); // Duplicate
+            } else if (kind == 7) {
+                final String cmd = RAND.nextBoolean() ? Resource.CMD_DEL : Resource.CMD_MARK;
+                line = cmd + ' ' + RAND.nextInt(taskLines.size());
+            } else if (kind == 8) {
+                line = Resource.CMD_UNMK + ' ' + RAND.nextInt(taskLines.size());
+            } else {
+                line = RAND.nextBoolean() ? Resource.CMD_TODO : randString();
+            }
+            try {
+                expected.parseAndGetResponse(line);
+            } catch (MeggyException ignored) {
+            } // Lines with error are skipped in loading too.
+            data.append(line).append(RAND.nextBoolean() ? "\n" : "\r\n");
+        }
+        Files.writeString(storageFile.toPath(), data);
+        final Meggy loaded = new Meggy(storageFile, false);
+        loaded.bindUi(DROP);
+        assertEquals(expected.parseAndGetResponse(Resource.CMD_LIST), loaded.parseAndGetResponse(Resource.CMD_LIST));
+        storageFile.delete();
+        expectedFile.delete();
+    }
+
+    @Test
+    public void batchedSaveTest() throws MeggyException {
+        final File storageFile = new File(TEST_DIR, "batched.txt");
+        storageFile.delete();
+        final Meggy m1 = new Meggy(storageFile, true);
+        m1.bindUi(DROP);
+        m1.enableBatchedSave(10, 64);
+        for (int i = 0; i < 300; i++) {
+            m1.parseAndGetResponse(Resource.CMD_TODO + ' ' + i);
+        }
+        m1.parseAndGetResponse(Resource.CMD_MARK + " 3");
+        m1.parseAndGetResponse(Resource.CMD_EXIT);
+        final Meggy m2 = new Meggy(storageFile, true);
+        m2.bindUi(DROP);
+        assertEquals(m1, m2);
+        m1.close();
+        storageFile.delete();
+    }
+
+    @Test
+    public void saveSchedulerShutdownTest() throws InterruptedException {
+        final CountDownLatch isFlushing = new CountDownLatch(1);
+        final AtomicInteger nFlushes = new AtomicInteger();
+        final AtomicInteger nInterrupts = new AtomicInteger();
+        final SaveScheduler scheduler = new SaveScheduler(() -> {
+            isFlushing.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                nInterrupts.incrementAndGet();
+            }
+            nFlushes.incrementAndGet();
+        }, 60_000, 1);
+        scheduler.onChange();
+        isFlushing.await();
+        scheduler.shutdown(); // Waits for the background flush, then flushes once more.
+        assertEquals(0, nInterrupts.get());
+        assertEquals(2, nFlushes.get());
+    }
+
+    @Test
+    public void journalCompactionTest() throws MeggyException {
+        final File storageFile = new File(TEST_DIR, "compaction.txt");
+        storageFile.delete();
+        final Meggy m1 = new Meggy(storageFile, true);
+        m1.bindUi(DROP);
+        m1.parseAndGetResponse(Resource.CMD_TODO + ' ' + randString());
+        m1.parseAndGetResponse(Resource.CMD_TODO + ' ' + randString());
+        for (int i = 0; i < 5000; i++) {
+            m1.parseAndGetResponse((RAND.nextBoolean() ? Resource.CMD_MARK : Resource.CMD_UNMK) + ' ' + (i % 2 + 1));
+        }
+        final Meggy m2 = new Meggy(storageFile, true);
+        m2.bindUi(DROP);
+        assertEquals(m1, m2);
+        assert storageFile.length() < 5000 * 4 : "Journal is not compacted";
+        storageFile.delete();
+    }
+
+    @Test
+    public void failedSaveTest() throws MeggyException {
+        for (boolean isJournaled : new boolean[]{false, true}) {
+            final File storageFile = new File(TEST_DIR, "failed-save.txt");
+            final File blocker = new File(storageFile, "blocker");
+            blocker.delete();
+            storageFile.delete();
+            final List<String> notifs = new ArrayList<>();
+            final Meggy m1 = new Meggy(storageFile, isJournaled);
+            m1.bindUi(notifs::add);
+            m1.parseAndGetResponse(Resource.CMD_TODO + " t0");
+            m1.parseAndGetResponse(Resource.CMD_TODO + " t1");
+            // A non-empty directory in place of storage file fails every write.
+            storageFile.delete();
+            assertTrue(blocker.mkdirs());
+            m1.parseAndGetResponse(Resource.CMD_DEL + " 1");
+            assertTrue(notifs.get(notifs.size() - 1).contains(Resource.ERR_FILE_WRITE), notifs.toString());
+            blocker.delete();
+            storageFile.delete();
+            m1.flush(); // Retries the change that failed to save.
+            m1.parseAndGetResponse(Resource.CMD_MARK + " 1");
+            final Meggy m2 = new Meggy(storageFile, isJournaled);
+            m2.bindUi(DROP);
+            assertEquals(m1, m2);
+            storageFile.delete();
+            new File(storageFile.getPath() + ".tmp").delete();
+        }
+    }
+
+    @Test
+    public void tornJournalTest() throws IOException, MeggyException {
+        final File storageFile = new File(TEST_DIR, "torn.txt");
+        storageFile.delete();
+        final Meggy m1 = new Meggy(storageFile, true);
+        m1.bindUi(DROP);
+        for (int i = 1; i <= 15; i++) {
+            m1.parseAndGetResponse(Resource.CMD_TODO + " t" + i);
+        }
+        final String beforeDel = m1.parseAndGetResponse(Resource.CMD_LIST);
+        m1.parseAndGetResponse(Resource.CMD_DEL + " 12");
+        // Crash while appending: "delete 12\n" is cut to "delete 1".
+        final byte[] data = Files.readAllBytes(storageFile.toPath());
+        Files.write(storageFile.toPath(), Arrays.copyOf(data, data.length - 2));
+
+        final List<String> lines = new ArrayList<>();
+        final Storage storage = new Storage(storageFile, true);
+        assertThrows(MeggyException.class, () -> storage.loadParallel(lines::add, task -> {
+        }, line -> null));
+        assertEquals(15, lines.size());
+        assertFalse(lines.contains(Resource.CMD_DEL + " 1"));
+
+        final List<String> notifs = new ArrayList<>();
+        final Meggy m2 = new Meggy(storageFile, true);
+        m2.bindUi(notifs::add);
+        assertEquals(beforeDel, m2.parseAndGetResponse(Resource.CMD_LIST)); // Torn record is dropped with a warning.
+        assertTrue(notifs.stream().anyMatch(n -> n.contains(Util.ERROR_WRONG_FILE_0)), notifs.toString());
+        m2.parseAndGetResponse(Resource.CMD_MARK + " 2");
+        final Meggy m3 = new Meggy(storageFile, true);
+        m3.bindUi(DROP);
+        assertEquals(m2, m3);
+        assertEquals('\n', Files.readString(storageFile.toPath()).charAt((int) storageFile.length() - 1));
+        storageFile.delete();
+    }
+
+    @Test
+    public void batchIdxCmdTest() throws MeggyException {
+        final File storageFile = new File(TEST_DIR, "batch.txt");
+        storageFile.delete();
+        final Meggy batched = new Meggy(storageFile, true);
+        batched.bindUi(DROP);
+        final Meggy single = new Meggy(new File(TEST_DIR, "batch-expected.txt"));
+        single.bindUi(DROP);
+        single.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        final int len = 200;
+        for (int i = 0; i < len; i++) {
+            final String line = Resource.CMD_TODO + " task " + i;
+            batched.parseAndGetResponse(line);
+            single.parseAndGetResponse(line);
+        }
+        int size = len;
+        for (int round = 0; round < 20; round++) {
+            final BitSet idxs = new BitSet();
+            while (idxs.cardinality() < 4) {
+                final int from = RAND.nextInt(size);
+                idxs.set(from, Math.min(size, from + 1 + RAND.nextInt(3)));
+            }
+            final String cmd = new String[]{Resource.CMD_MARK, Resource.CMD_UNMK, Resource.CMD_DEL}[round % 3];
+            final String batchLine = Parser.fmtIdxsCmd(cmd, idxs);
+            // Round trip through parser, with ranges reordered and overlapping.
+            final List<Parser.IdxRange> ranges = Parser.parseIdxRanges(batchLine.substring(cmd.length() + 1));
+            final BitSet parsed = new BitSet();
+            final StringBuilder shuffled = new StringBuilder(cmd).append(' ');
+            for (int i = ranges.size() - 1; i >= 0; i--) {
+                final Parser.IdxRange range = ranges.get(i);
+                parsed.set(range.from, range.to + 1);
+                shuffled.append(range.from + 1).append('-').append(range.to + 1).append(", ").append(range.to + 1)
+                        .append(i > 0 ? ',' : ' ');
+            }
+            assertEquals(idxs, parsed);
+            batched.parseAndGetResponse(shuffled.toString());
+            for (int i = idxs.length() - 1; i >= 0; i = idxs.previousSetBit(i - 1)) {
+                single.parseAndGetResponse(Parser.fmtIdxCmd(cmd, i));
+            }
+            assertEquals(single, batched);
+            if (cmd.equals(Resource.CMD_DEL)) {
+                size -= idxs.cardinality();
+            }
+        }
+        // Invalid batches change nothing.
+        final String before = batched.parseAndGetResponse(Resource.CMD_LIST);
+        assertThrows(MeggyIobException.class, () -> batched.parseAndGetResponse(Resource.CMD_DEL + " 1-3," + len));
+        assertThrows(MeggyNfException.class, () -> batched.parseAndGetResponse(Resource.CMD_MARK + " 5-3,1"));
+        assertThrows(MeggyNfException.class, () -> batched.parseAndGetResponse(Resource.CMD_UNMK + " 1,,2"));
+        assertEquals(before, batched.parseAndGetResponse(Resource.CMD_LIST));
+        final Meggy reloaded = new Meggy(storageFile, true);
+        reloaded.bindUi(DROP);
+        assertEquals(batched, reloaded);
+        storageFile.delete();
+
+        final TaskList tree = new TaskList(TaskList.Backing.TREE);
+        final TaskList array = new TaskList(TaskList.Backing.ARRAY);
+        for (int i = 0; i < len; i++) {
+            final UserTask task = Util.TODO_NEW.apply("task " + i);
+            tree.add(task);
+            array.add(task);
+        }
+        final BitSet idxs = new BitSet();
+        for (int i = 0; i < len / 2; i++) {
+            idxs.set(RAND.nextInt(len));
+        }
+        assertEquals(array.removeIdxs(idxs), tree.removeIdxs(idxs));
+        assertEquals(array, tree);
+        assertEquals(len - idxs.cardinality(), tree.size());
+        assertEquals(array.find("task 1"), tree.find("task 1"));
+    }
+
+    @Test
+    public void pagedOutputTest() throws MeggyException {
+        final Meggy m = new Meggy(new File(TEST_DIR, "paged.txt"));
+        m.bindUi(DROP);
+        m.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        final int len = 3000;
+        for (int i = 0; i < len; i++) {
+            m.parseAndGetResponse(Resource.CMD_TODO + (i % 3 == 0 ? " foo " : " bar ") + i);
+        }
+        // Streamed chunks add up to the collected response.
+        for (String line : new String[]{"list", "list 10", "list 200 100", "find foo", "find foo --limit 50"}) {
+            final ArrayList<String> chunks = new ArrayList<>();
+            m.parseAndStreamResponse(line, chunks::add);
+            assert line.contains(" 100") || line.contains(" 50") || chunks.size() > 2 : "Long response not chunked";
+            assertEquals(m.parseAndGetResponse(line), String.join("", chunks));
+        }
+        final String[] all = m.parseAndGetResponse(Resource.CMD_LIST).split("\n");
+        final String[] page = m.parseAndGetResponse(Resource.CMD_LIST + " 200 100").split("\n");
+        assertEquals(Resource.fmtListPage(199, 299, len), page[0] + '\n');
+        assertEquals(101, page.length);
+        for (int i = 1; i < page.length; i++) {
+            assertEquals(all[199 + i], page[i]);
+        }
+        // Count beyond end of list is cut.
+        assertEquals(1 + 1, m.parseAndGetResponse(Resource.CMD_LIST + " " + len + " 100").split("\n").length);
+        final String[] found = m.parseAndGetResponse(Resource.CMD_FIND + " foo --limit 50").split("\n");
+        assertEquals(51, found.length);
+        final String[] foundAll = m.parseAndGetResponse(Resource.CMD_FIND + " foo").split("\n");
+        assertEquals(Arrays.asList(foundAll).subList(0, 51), Arrays.asList(found));
+        // Limit keyword only counts as a whole word.
+        assertEquals(Resource.NOTIF_FIND, m.parseAndGetResponse(Resource.CMD_FIND + " foo --limitless"));
+        assertThrows(MeggyIobException.class, () -> m.parseAndGetResponse(Resource.CMD_LIST + " 0"));
+        assertThrows(MeggyIobException.class, () -> m.parseAndGetResponse(Resource.CMD_LIST + " " + (len + 1)));
+        assertEquals(Resource.ERR_BASE + Resource.fmtErrCount("0"), assertThrows(MeggyException.class,
+                () -> m.parseAndGetResponse(Resource.CMD_LIST + " 1 0")).getMessage());
+        assertEquals(Resource.ERR_BASE + Resource.fmtErrCount("x"), assertThrows(MeggyException.class,
+                () -> m.parseAndGetResponse(Resource.CMD_FIND + " foo --limit x")).getMessage());
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse(Resource.CMD_FIND + " --limit 5"));
+        final ArrayList<String> chunks = new ArrayList<>();
+        assertEquals(Resource.ERR_BASE + Resource.fmtErrCount("-1"), assertThrows(MeggyException.class,
+                () -> m.parseAndStreamResponse(Resource.CMD_LIST + " 1 -1", chunks::add)).getMessage());
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    public void renderCacheTest() throws MeggyException {
+        final UserTask[] tasks = {
+            Util.TODO_NEW.apply(randString()),
+            DdlTask.of("d /by 2038-01-19 03:14"),
+            EventTask.of("e /from 2106-02-07 06:28 /to " + randString())
+        };
+        for (UserTask task : tasks) {
+            final String undone = task.toString();
+            assertSame(undone, task.toString());
+            assertSame(task.recreateCmd(), task.recreateCmd());
+            task.setDone(true);
+            final String done = task.toString();
+            assertEquals(undone.replaceFirst("\\[ ]", "[" + Resource.DONE_MK + "]"), done);
+            task.setDone(true);
+            assertSame(done, task.toString());
+            task.setDone(false);
+            assertEquals(undone, task.toString());
+        }
+        final MeggyTime time = MeggyTime.of("2038-01-19 03:14");
+        assertSame(time.toString(), time.toString());
+        assertEquals("19/01/2038 03:14", time.toString());
+    }
+
+    @Test
+    public void parseJobAndArgTest() {
+        final char[] alphabet = {'a', 'T', 'o', 'D', ' ', ' ', '\t', '\r', '\n', '\f', '/', '\u000B'};
+        // Dotless and dotted I fold to 'i' only when ignoring case, not when lower-cased.
+        final String[] cmds = {"todo", "ToDo", "TODO", "deadline", "DEADL\u0131NE", "deadl\u0130ne", "event",
+                "eventful", "", " "};
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder line = new StringBuilder();
+            for (int j = RAND.nextInt(3); j > 0; j--) {
+                line.append(alphabet[4 + RAND.nextInt(6)]);
+            }
+            line.append(cmds[RAND.nextInt(cmds.length)]);
+            for (int j = RAND.nextInt(12); j > 0; j--) {
+                line.append(alphabet[RAND.nextInt(alphabet.length)]);
+            }
+            // Former implementation.
+            final String collapsed = line.toString().replaceAll("[ \t\r\n\f]+", " ").trim();
+            final int spaceIdx = collapsed.indexOf(' ');
+            final String cmd = (spaceIdx < 0 ? collapsed : collapsed.substring(0, spaceIdx)).toLowerCase();
+            final Function<String, UserTask> job = Util.TASK_CMD_TO_NEW.get(cmd);
+            final String args = job == null ? collapsed : spaceIdx < 0 ? "" : collapsed.substring(spaceIdx + 1).trim();
+
+            final Parser.JobAndArg<UserTask> parsed = Parser.parseJobAndArg(Util.TASK_CMD_TO_NEW, line.toString());
+            assertEquals(cmd, parsed.cmd, line.toString());
+            assertSame(job, parsed.job);
+            assertEquals(args, parsed.args, line.toString());
+        }
+    }
+
+    @Test
+    public void dueTest() throws MeggyException {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            dueTest(new TaskList(backing));
+        }
+        final Meggy m = new Meggy(new File(TEST_DIR, "due.txt"));
+        m.bindUi(DROP);
+        m.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        m.parseAndGetResponse(Resource.CMD_DDL + " a /by 01/02/2100 10:00");
+        m.parseAndGetResponse(Resource.CMD_EVENT + " b /from 01/02/2100 09:00 /to 01/02/2100 11:00");
+        m.parseAndGetResponse(Resource.CMD_DDL + " c /by someday");
+        m.parseAndGetResponse(Resource.CMD_TODO + " d");
+        m.parseAndGetResponse(Resource.CMD_DDL + " e /by 01/01/2000 00:00");
+        final String e = " 1.[D][ ] e (by: 01/01/2000 00:00)\n";
+        final String b = " 1.[E][ ] b (from: 01/02/2100 09:00 to: 01/02/2100 11:00)\n";
+        final String a = " 1.[D][ ] a (by: 01/02/2100 10:00)\n";
+        assertEquals(Resource.NOTIF_DUE + e + b.replace(" 1.", " 2."),
+                m.parseAndGetResponse("due before 01/02/2100 10:00"));
+        assertEquals(Resource.NOTIF_DUE + a, m.parseAndGetResponse("due after 01/02/2100 09:00"));
+        assertEquals(Resource.NOTIF_DUE + b + a.replace(" 1.", " 2."),
+                m.parseAndGetResponse("DUE between 01/02/2100 09:00 /and 01/02/2100 10:00"));
+        assertEquals(Resource.NOTIF_DUE + e, m.parseAndGetResponse("due overdue"));
+        assertEquals(Resource.NOTIF_DUE_OTHER + " 1.[D][ ] c (by: [someday])\n", m.parseAndGetResponse("due other"));
+        m.parseAndGetResponse(Resource.CMD_MARK + " 3,5");
+        assertEquals(Resource.NOTIF_DUE, m.parseAndGetResponse("due overdue"));
+        assertEquals(Resource.NOTIF_DUE_OTHER, m.parseAndGetResponse("due other"));
+        m.parseAndGetResponse(Resource.CMD_DEL + " 2");
+        assertEquals(Resource.NOTIF_DUE + a, m.parseAndGetResponse("due before 01/01/2200 00:00"));
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse("due"));
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse("due before"));
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse("due between 01/01/2000 00:00"));
+        assertThrows(MeggyException.class, () -> m.parseAndGetResponse("due soon"));
+        assertThrows(MeggyException.class, () -> m.parseAndGetResponse("due after someday"));
+        assertThrows(MeggyException.class,
+                () -> m.parseAndGetResponse("due between 01/01/2001 00:00 /and 01/01/2000 00:00"));
+    }
+
+    /** Checks due index queries against scans after random changes to the list. */
+    private static void dueTest(TaskList tasks) throws MeggyException {
+        final LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        // Parsed due time of each task with one, as MeggyTime does not expose it.
+        final IdentityHashMap<UserTask, LocalDateTime> dues = new IdentityHashMap<>();
+        final Set<UserTask> customized = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 3000; i++) {
+            final int op = RAND.nextInt(10);
+            if (op < 5 || tasks.size() < 10) {
+                final int kind = RAND.nextInt(8);
+                final LocalDateTime time = base.plusHours(RAND.nextInt(50));
+                final MeggyTime due = kind == 0 ? MeggyTime.NA : kind == 1 ? MeggyTime.ofCustomized("later")
+                        : MeggyTime.of(time);
+                final UserTask task = kind == 2 ? Util.TODO_NEW.apply("todo " + i)
+                        : kind % 2 == 0 ? DdlTask.of("ddl " + i, due, "ddl " + i)
+                        : EventTask.of("event " + i, due, MeggyTime.NA, "event " + i);
+                if (kind >= 3) {
+                    dues.put(task, time);
+                } else if (kind == 1) {
+                    customized.add(task);
+                }
+                tasks.add(RAND.nextInt(tasks.size() + 1), task);
+            } else if (op < 7) {
+                tasks.remove(RAND.nextInt(tasks.size()));
+            } else if (op < 9) {
+                tasks.setDone(RAND.nextInt(tasks.size()), RAND.nextBoolean());
+            } else {
+                final BitSet idxs = new BitSet();
+                idxs.set(RAND.nextInt(tasks.size()));
+                idxs.set(RAND.nextInt(tasks.size()));
+                tasks.removeIdxs(idxs);
+            }
+            if (i % 100 != 0) {
+                continue;
+            }
+            final LocalDateTime from = base.plusHours(RAND.nextInt(50));
+            final LocalDateTime to = from.plusHours(RAND.nextInt(10));
+            final boolean isFromInclusive = RAND.nextBoolean();
+            final boolean isToInclusive = RAND.nextBoolean();
+            final ArrayList<UserTask> expected = new ArrayList<>();
+            final ArrayList<UserTask> expectedCustomized = new ArrayList<>();
+            for (UserTask task : tasks) {
+                final LocalDateTime due = dues.get(task);
+                if (!task.isDone() && due != null
+                        && (isFromInclusive ? !due.isBefore(from) : due.isAfter(from))
+                        && (isToInclusive ? !due.isAfter(to) : due.isBefore(to))) {
+                    expected.add(task);
+                }
+                if (!task.isDone() && customized.contains(task)) {
+                    expectedCustomized.add(task);
+                }
+            }
+            expected.sort(Comparator.comparing(dues::get)); // Stable, so ties stay in list order.
+            assertEquals(expected, tasks.findDue(from, isFromInclusive, to, isToInclusive));
+            assertEquals(expectedCustomized, tasks.findDueCustomized());
+            final List<UserTask> all = tasks.findDue(null, false, null, false);
+            assertEquals(all.subList(0, all.size() - tasks.findDue(from, !isFromInclusive, null, false).size()),
+                    tasks.findDue(null, false, from, isFromInclusive));
+        }
+    }
+
+    @Test
+    public void eventIndexTest() throws MeggyException {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            eventIndexTest(new TaskList(backing));
+        }
+        final Meggy m = new Meggy(new File(TEST_DIR, "agenda.txt"));
+        m.bindUi(DROP);
+        m.enableBatchedSave(Long.MAX_VALUE / 2, Integer.MAX_VALUE);
+        m.parseAndGetResponse(Resource.CMD_EVENT + " a /from 03/04/2100 10:00 /to 03/04/2100 12:00");
+        final String b = m.parseAndGetResponse(Resource.CMD_EVENT + " b /from 03/04/2100 12:00 /to 03/04/2100 13:00");
+        assertFalse(b.contains(Resource.NOTIF_CONFLICT), b);
+        final String c = m.parseAndGetResponse(Resource.CMD_EVENT + " c /from 03/04/2100 11:00 /to 03/04/2100 12:30");
+        assertTrue(c.endsWith(Resource.NOTIF_CONFLICT
+                + Resource.TASK_STRING_INDENT + "[E][ ] a (from: 03/04/2100 10:00 to: 03/04/2100 12:00)\n"
+                + Resource.TASK_STRING_INDENT + "[E][ ] b (from: 03/04/2100 12:00 to: 03/04/2100 13:00)\n"), c);
+        m.parseAndGetResponse(Resource.CMD_MARK + " 1");
+        m.parseAndGetResponse(Resource.CMD_EVENT + " d /from 03/04/2100 09:00 /to someday");
+        assertEquals(1, m.parseAndGetResponse(Resource.CMD_EVENT + " e /from 03/04/2100 10:00 /to 03/04/2100 11:30")
+                .split(Resource.NOTIF_CONFLICT, -1)[1].split("\n").length);
+        assertEquals(Resource.NOTIF_AGENDA
+                        + " 1.[E][X] a (from: 03/04/2100 10:00 to: 03/04/2100 12:00)\n"
+                        + " 2.[E][ ] e (from: 03/04/2100 10:00 to: 03/04/2100 11:30)\n"
+                        + " 3.[E][ ] c (from: 03/04/2100 11:00 to: 03/04/2100 12:30)\n",
+                m.parseAndGetResponse("agenda /from 03/04/2100 09:30 /to 03/04/2100 11:00"));
+        assertEquals(Resource.NOTIF_AGENDA + " 1.[E][ ] d (from: 03/04/2100 09:00 to: [someday])\n",
+                m.parseAndGetResponse("agenda /from 03/04/2100 09:00 /to 03/04/2100 09:00"));
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse("agenda 03/04/2100 09:00"));
+        assertThrows(MeggyNoArgException.class, () -> m.parseAndGetResponse("agenda /from 03/04/2100 09:00 /to"));
+        assertThrows(MeggyException.class, () -> m.parseAndGetResponse("agenda /from tomorrow /to 03/04/2100 09:00"));
+        assertThrows(MeggyException.class,
+                () -> m.parseAndGetResponse("agenda /from 03/04/2100 10:00 /to 03/04/2100 09:00"));
+    }
+
+    /** Checks event index queries against scans after random changes to the list. */
+    private static void eventIndexTest(TaskList tasks) throws MeggyException {
+        final LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        // Start and end hours after base of each event with parsed start time.
+        final IdentityHashMap<UserTask, int[]> spans = new IdentityHashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            final int op = RAND.nextInt(10);
+            if (op < 5 || tasks.size() < 10) {
+                final int start = RAND.nextInt(100);
+                final int end = start + RAND.nextInt(10) - 2;
+                final int kind = RAND.nextInt(6);
+                final MeggyTime startTime = kind == 0 ? MeggyTime.ofCustomized("soon")
+                        : MeggyTime.of(base.plusHours(start));
+                final MeggyTime endTime = kind == 1 ? MeggyTime.NA : MeggyTime.of(base.plusHours(end));
+                final UserTask task = kind == 2 ? Util.TODO_NEW.apply("todo " + i)
+                        : EventTask.of("event " + i, startTime, endTime, "event " + i);
+                if (kind >= 3) {
+                    spans.put(task, new int[]{start, Math.max(start, end)});
+                } else if (kind == 1) {
+                    spans.put(task, new int[]{start, start});
+                }
+                tasks.add(RAND.nextInt(tasks.size() + 1), task);
+            } else if (op < 7) {
+                tasks.remove(RAND.nextInt(tasks.size()));
+            } else if (op < 9) {
+                tasks.setDone(RAND.nextInt(tasks.size()), RAND.nextBoolean());
+            } else {
+                final BitSet idxs = new BitSet();
+                idxs.set(RAND.nextInt(tasks.size()));
+                idxs.set(RAND.nextInt(tasks.size()));
+                tasks.removeIdxs(idxs);
+            }
+            if (i % 100 != 0) {
+                continue;
+            }
+            final int from = RAND.nextInt(100);
+            final int to = from + RAND.nextInt(5);
+            final ArrayList<UserTask> expected = new ArrayList<>();
+            for (UserTask task : tasks) {
+                final int[] span = spans.get(task);
+                if (span != null && span[0] <= to && span[1] >= from) {
+                    expected.add(task);
+                }
+            }
+            expected.sort(Comparator.comparingInt(t -> spans.get(t)[0])); // Stable, so ties stay in list order.
+            assertEquals(expected, tasks.findEvents(base.plusHours(from), base.plusHours(to)));
+            // Clashes of an event not in list.
+            final EventTask event = EventTask.of("new", MeggyTime.of(base.plusHours(from)),
+                    MeggyTime.of(base.plusHours(to)), "new");
+            expected.removeIf(t -> {
+                final int[] span = spans.get(t);
+                final boolean isPoint = span[0] == span[1];
+                final boolean clashes = from == to ? span[0] <= from && (from < span[1] || isPoint && span[0] == from)
+                        : span[0] < to && (from < span[1] || isPoint && span[0] >= from);
+                return t.isDone() || !clashes;
+            });
+            assertEquals(expected, tasks.findConflicts(event));
+        }
     }
 }
@@ -0,0 +1,189 @@
+package meggy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+import meggy.exception.MeggyException;
+
+/**
+ * Runs a batch of commands, one per line, through a chatbot without GUI, and writes the responses to a stream. Changes
+ * are saved once at the end of the batch rather than after every command. Blank lines are skipped, and a batch ends
+ * early after 'bye' command.
+ * <p>
+ * Lines are separated by line feed, carriage return, or both in sequence, and are read in bulk through NIO buffers.
+ */
+public class BatchRunner {
+    /** Encoding of input, the same as that of text data files. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+    /** The chatbot to run commands. */
+    private final Meggy meggy;
+    /** Where responses go. */
+    private final Writer out;
+    /** Whether responses are dropped instead of written. */
+    private final boolean isQuiet;
+    /** Reused buffer of input bytes, grown when a single line does not fit. */
+    private ByteBuffer buffer = ByteBuffer.allocate(Util.BATCH_BUFFER_SIZE);
+    /** Whether the task list has been loaded. */
+    private boolean isLoaded = false;
+    /** Whether 'bye' command has been run. */
+    private boolean isDone = false;
+    private long nCmds = 0;
+    private long nErrors = 0;
+
+    /**
+     * Binds the chatbot to this runner, which loads its task list from storage file, and defers its saving.
+     *
+     * @param meggy   Non-null. The chatbot to run commands. Must not be bound to any UI.
+     * @param out     Non-null. Where responses and extra messages go. Not flushed until the end of the batch.
+     * @param isQuiet Whether responses and extra messages are dropped instead of written. Errors loading the task list
+     *                are written regardless.
+     */
+    public BatchRunner(Meggy meggy, Writer out, boolean isQuiet) {
+        assert meggy != null;
+        assert out != null;
+        this.meggy = meggy;
+        this.out = out;
+        this.isQuiet = isQuiet;
+        meggy.bindUi(msg -> {
+            if (!msg.equals(Resource.GREETINGS) && (!isLoaded || !isQuiet)) {
+                writeUnchecked(msg);
+            }
+        });
+        isLoaded = true;
+        meggy.deferSave();
+    }
+
+    /**
+     * Runs every line of a script file.
+     *
+     * @param script Non-null. File of commands, one per line.
+     * @throws IOException If reading the file fails.
+     */
+    public void run(File script) throws IOException {
+        assert script != null;
+        try (FileChannel ch = FileChannel.open(script.toPath(), StandardOpenOption.READ)) {
+            new MappedLineReader(ch, CHARSET, MappedLineReader.DEFAULT_WINDOW_SIZE)
+                    .forEachLine(0, ch.size(), this::runLine);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs every line read from a channel, such as standard input, until it ends.
+     *
+     * @param in Non-null. Channel of commands, one per line. Not closed.
+     * @throws IOException If reading the channel fails.
+     */
+    public void run(ReadableByteChannel in) throws IOException {
+        assert in != null;
+        try {
+            readLines(in);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Runs every line read from a channel until it ends. */
+    private void readLines(ReadableByteChannel in) throws IOException {
+        buffer.clear();
+        boolean isAfterCr = false;
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            final byte[] bytes = buffer.array();
+            final int limit = buffer.limit();
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                final byte b = bytes[i];
+                if (b != '\n' && b != '\r') {
+                    isAfterCr = false;
+                    continue;
+                }
+                if (b == '\n' && isAfterCr && i == lineStart) { // Line feed right after carriage return.
+                    lineStart = i + 1;
+                    isAfterCr = false;
+                    continue;
+                }
+                runLine(new String(bytes, lineStart, i - lineStart, CHARSET));
+                lineStart = i + 1;
+                isAfterCr = b == '\r';
+            }
+            buffer.position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) { // The line is longer than buffer.
+                final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            runLine(new String(buffer.array(), 0, buffer.limit(), CHARSET));
+        }
+    }
+
+    /**
+     * Saves all changes, and writes the summary if asked for. Flushes the output stream.
+     *
+     * @param isSummarized Whether to write the number of commands and errors, and time spent.
+     * @param startNanos   Value of {@link System#nanoTime} when the batch started.
+     * @throws IOException If writing to the output stream fails.
+     */
+    public void finish(boolean isSummarized, long startNanos) throws IOException {
+        final long runEndNanos = System.nanoTime();
+        meggy.close();
+        if (isSummarized) {
+            out.write(Resource.fmtBatchSummary(nCmds, nErrors, runEndNanos - startNanos,
+                    System.nanoTime() - runEndNanos));
+        }
+        out.flush();
+    }
+
+    /** Gets number of commands run. */
+    public long getCmdCount() {
+        return nCmds;
+    }
+
+    /** Gets number of commands that failed with an error message. */
+    public long getErrorCount() {
+        return nErrors;
+    }
+
+    /** Runs a command line, parsed only once, and writes its response. Skipped if blank or after 'bye' command. */
+    private void runLine(String line) {
+        if (isDone || line.isBlank()) {
+            return;
+        }
+        nCmds++;
+        try {
+            final Parser.JobAndArg<String> jobAndArg = Parser.parseJobAndArg(meggy.cmdToJob, line);
+            isDone = Resource.CMD_EXIT.equals(jobAndArg.cmd);
+            if (isQuiet) {
+                meggy.getResponse(jobAndArg);
+            } else {
+                meggy.streamResponse(jobAndArg, this::writeUnchecked);
+            }
+        } catch (MeggyException e) {
+            nErrors++;
+            if (!isQuiet) {
+                writeUnchecked(e.getMessage());
+            }
+        }
+    }
+
+    /** Writes a chunk of text, wrapping {@link IOException} so that it passes through the chatbot. */
+    private void writeUnchecked(String chunk) {
+        try {
+            out.write(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
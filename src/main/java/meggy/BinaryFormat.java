@@ -0,0 +1,197 @@
+package meggy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import meggy.exception.Consumer;
+import meggy.exception.MeggyException;
+import meggy.task.DdlTask;
+import meggy.task.EventTask;
+import meggy.task.TodoTask;
+import meggy.task.UserTask;
+
+/**
+ * Compact binary data file format. The file starts with {@code HEADER}, followed by records. Each record starts with a
+ * one-byte record type:
+ * <ul>
+ *     <li>Task records: a done bit, the task description, the creating arguments (except to-dos), then all times.</li>
+ *     <li>Command records: a command line to be replayed, used for journaled changes.</li>
+ * </ul>
+ * Strings are length-prefixed UTF-8. Parsable times are stored as epoch seconds.
+ */
+final class BinaryFormat {
+    /** Format version. Increment on incompatible changes. */
+    static final byte VERSION = 1;
+    /** File header: magic bytes then version. Text data files never start with a zero byte. */
+    static final byte[] HEADER = {0, 'M', 'G', 'B', VERSION};
+    private static final byte REC_TODO = 1;
+    private static final byte REC_DDL = 2;
+    private static final byte REC_EVENT = 3;
+    private static final byte REC_CMD = 4;
+    private static final byte TIME_NA = 0;
+    private static final byte TIME_FORMATTED = 1;
+    private static final byte TIME_CUSTOMIZED = 2;
+    private static final byte FLAG_DONE = 1;
+    /** Maximum number of bytes of a string allocated before they are read. */
+    private static final int STRING_CHUNK_SIZE = 1 << 16;
+
+    /** @deprecated Class with all methods static should not be initialized. */
+    private BinaryFormat() {
+    }
+
+    /**
+     * Checks whether the beginning of a file is a binary header, regardless of version.
+     *
+     * @param head Non-null. The first bytes of file.
+     */
+    static boolean isBinary(byte[] head) {
+        assert head != null;
+        final int magicLen = HEADER.length - 1;
+        return head.length >= magicLen && Arrays.equals(head, 0, magicLen, HEADER, 0, magicLen);
+    }
+
+    /**
+     * Writes a task record.
+     *
+     * @param out  Non-null. Destination.
+     * @param task Non-null. The task to be written.
+     */
+    static void writeTask(DataOutput out, UserTask task) throws IOException {
+        assert task != null;
+        final byte flags = task.isDone() ? FLAG_DONE : 0;
+        if (task instanceof DdlTask) {
+            out.writeByte(REC_DDL);
+            out.writeByte(flags);
+            writeString(out, task.desc);
+            writeString(out, task.getArgs());
+            writeTime(out, ((DdlTask) task).due);
+        } else if (task instanceof EventTask) {
+            final EventTask event = (EventTask) task;
+            out.writeByte(REC_EVENT);
+            out.writeByte(flags);
+            writeString(out, task.desc);
+            writeString(out, task.getArgs());
+            writeTime(out, event.start);
+            writeTime(out, event.end);
+        } else {
+            assert task instanceof TodoTask;
+            out.writeByte(REC_TODO);
+            out.writeByte(flags);
+            writeString(out, task.desc);
+        }
+    }
+
+    /**
+     * Writes a command record.
+     *
+     * @param out Non-null. Destination.
+     * @param cmd Non-null. The command line to be replayed.
+     */
+    static void writeCmd(DataOutput out, String cmd) throws IOException {
+        out.writeByte(REC_CMD);
+        writeString(out, cmd);
+    }
+
+    /**
+     * Reads the rest of a record and applies it.
+     *
+     * @param in      Non-null. Source, positioned right after the record type byte.
+     * @param recType The record type byte.
+     * @param parser  Non-null. Applies command records.
+     * @param adder   Non-null. Applies task records.
+     * @throws IOException    If the record is truncated or of unknown type.
+     * @throws MeggyException If applying the record fails.
+     */
+    static void readRecord(DataInput in, int recType, Consumer<String> parser, Consumer<UserTask> adder)
+            throws IOException, MeggyException {
+        if (recType == REC_CMD) {
+            parser.accept(readString(in));
+            return;
+        }
+        final UserTask task;
+        final byte flags = in.readByte();
+        final String desc = readString(in);
+        switch (recType) {
+        case REC_TODO:
+            task = new TodoTask(desc);
+            break;
+        case REC_DDL:
+            final String ddlArgs = readString(in);
+            task = DdlTask.of(desc, readTime(in), ddlArgs);
+            break;
+        case REC_EVENT:
+            final String eventArgs = readString(in);
+            final MeggyTime start = readTime(in);
+            task = EventTask.of(desc, start, readTime(in), eventArgs);
+            break;
+        default:
+            throw new IOException("Unknown record type " + recType);
+        }
+        task.setDone((flags & FLAG_DONE) != 0);
+        adder.accept(task);
+    }
+
+    private static void writeTime(DataOutput out, MeggyTime time) throws IOException {
+        if (time.formatted != null) {
+            out.writeByte(TIME_FORMATTED);
+            out.writeLong(time.formatted.toEpochSecond(ZoneOffset.UTC));
+        } else if (time == MeggyTime.NA) {
+            out.writeByte(TIME_NA);
+        } else {
+            out.writeByte(TIME_CUSTOMIZED);
+            writeString(out, time.customized);
+        }
+    }
+
+    private static MeggyTime readTime(DataInput in) throws IOException {
+        final byte tag = in.readByte();
+        switch (tag) {
+        case TIME_NA:
+            return MeggyTime.NA;
+        case TIME_FORMATTED:
+            return MeggyTime.of(LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC));
+        case TIME_CUSTOMIZED:
+            return MeggyTime.ofCustomized(readString(in));
+        default:
+            throw new IOException("Unknown time type " + tag);
+        }
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed string. Long strings are read chunk by chunk, so that a corrupt length beyond the end of
+     * file fails with {@link java.io.EOFException} once the file runs out, rather than allocating that many bytes.
+     */
+    private static String readString(DataInput in) throws IOException {
+        final int len = in.readInt();
+        if (len < 0) {
+            throw new IOException("Negative string length " + len);
+        }
+        if (len <= STRING_CHUNK_SIZE) {
+            final byte[] bytes = new byte[len];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(STRING_CHUNK_SIZE);
+        final byte[] chunk = new byte[STRING_CHUNK_SIZE];
+        int nLeft = len;
+        while (nLeft > 0) {
+            final int n = Math.min(nLeft, chunk.length);
+            in.readFully(chunk, 0, n);
+            bytes.write(chunk, 0, n);
+            nLeft -= n;
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
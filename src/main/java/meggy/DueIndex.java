@@ -0,0 +1,141 @@
+package meggy;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import meggy.task.DdlTask;
+import meggy.task.EventTask;
+import meggy.task.UserTask;
+
+/**
+ * Index of unfinished tasks by due time, for range queries in O(log n + k) time instead of scanning every task. The due
+ * time of a deadline is its 'by' time, and that of an event is its start time. Each indexed task has an integer id, and
+ * tasks due at the same time come out in id order.
+ * <p>
+ * User-customized times can't be ordered, so tasks with them are kept in a separate bucket. Completed tasks and tasks
+ * without time are not indexed.
+ */
+class DueIndex {
+    /** Indexed tasks with parsed due time, by due time and id. */
+    private final TreeMap<Key, UserTask> timed = new TreeMap<>();
+    /** Keys of tasks in {@code timed} by id. */
+    private final HashMap<Integer, Key> keys = new HashMap<>();
+    /** Indexed tasks with user-customized due time, by id. */
+    private final TreeMap<Integer, UserTask> customized = new TreeMap<>();
+
+    /**
+     * Indexes a task if it is unfinished and has due time.
+     *
+     * @param id   Id not in use.
+     * @param task Non-null. The task to be indexed.
+     */
+    void add(int id, UserTask task) {
+        assert task != null;
+        final MeggyTime due = getDue(task);
+        if (task.isDone() || due == null || due.equals(MeggyTime.NA)) {
+            return;
+        }
+        if (due.formatted == null) {
+            customized.put(id, task);
+            return;
+        }
+        final Key key = new Key(toSecond(due.formatted), id);
+        timed.put(key, task);
+        keys.put(id, key);
+    }
+
+    /**
+     * Removes a task from index if indexed.
+     *
+     * @param id Id of the task.
+     */
+    void remove(int id) {
+        final Key key = keys.remove(id);
+        if (key == null) {
+            customized.remove(id);
+        } else {
+            timed.remove(key);
+        }
+    }
+
+    /** Removes all tasks from index. */
+    void clear() {
+        timed.clear();
+        keys.clear();
+        customized.clear();
+    }
+
+    /**
+     * Finds tasks due within a range.
+     *
+     * @param from            Start of range, or {@code null} if unbounded.
+     * @param isFromInclusive Whether tasks due exactly at {@code from} are in range.
+     * @param to              End of range, or {@code null} if unbounded. Not before {@code from}.
+     * @param isToInclusive   Whether tasks due exactly at {@code to} are in range.
+     * @return Tasks in range, in ascending order of due time and then id.
+     */
+    List<UserTask> find(LocalDateTime from, boolean isFromInclusive, LocalDateTime to, boolean isToInclusive) {
+        assert from == null || to == null || !from.isAfter(to);
+        // Bounds take ids no task has, so that they fall before or after all tasks due at the same time.
+        final Key fromKey = from == null ? null
+                : new Key(toSecond(from), isFromInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+        final Key toKey = to == null ? null : new Key(toSecond(to), isToInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+        final NavigableMap<Key, UserTask> range;
+        if (fromKey != null && toKey != null) {
+            if (fromKey.compareTo(toKey) >= 0) { // Empty range like (t, t].
+                return new ArrayList<>();
+            }
+            range = timed.subMap(fromKey, false, toKey, false);
+        } else if (fromKey != null) {
+            range = timed.tailMap(fromKey, false);
+        } else if (toKey != null) {
+            range = timed.headMap(toKey, false);
+        } else {
+            range = timed;
+        }
+        return new ArrayList<>(range.values());
+    }
+
+    /** @return Tasks with user-customized due time in ascending order of id. */
+    List<UserTask> findCustomized() {
+        return new ArrayList<>(customized.values());
+    }
+
+    /** @return Due time of task, or {@code null} if the task has none. */
+    private static MeggyTime getDue(UserTask task) {
+        if (task instanceof DdlTask) {
+            return ((DdlTask) task).due;
+        }
+        if (task instanceof EventTask) {
+            return ((EventTask) task).start;
+        }
+        return null;
+    }
+
+    /** @return Seconds since epoch, taking the time as UTC. Preserves order. */
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /** Due time and id of an indexed task. Unboxed, as there is one key per indexed task. */
+    private static class Key implements Comparable<Key> {
+        private final long second;
+        private final long id;
+
+        Key(long second, long id) {
+            this.second = second;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            final int cmp = Long.compare(second, other.second);
+            return cmp != 0 ? cmp : Long.compare(id, other.id);
+        }
+    }
+}
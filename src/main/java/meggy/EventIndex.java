@@ -0,0 +1,253 @@
+package meggy;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import meggy.task.EventTask;
+import meggy.task.UserTask;
+
+/**
+ * Interval tree of events with parsed start time, for overlap queries without scanning every task. It is an AVL tree
+ * ordered by start time and id, where every node knows the latest end time in its subtree, so that subtrees ending
+ * before a query range are skipped. Each indexed event has an integer id.
+ * <p>
+ * An event whose end time is user-customized, missing, or before its start time is taken to end when it starts.
+ */
+class EventIndex {
+    /** Root of the tree, or {@code null} if empty. */
+    private Node root = null;
+    /** Start times of indexed events by id. */
+    private final HashMap<Integer, Long> starts = new HashMap<>();
+
+    /**
+     * Indexes a task if it is an event with parsed start time.
+     *
+     * @param id   Id not in use.
+     * @param task Non-null. The task to be indexed.
+     */
+    void add(int id, UserTask task) {
+        assert task != null;
+        final long[] span = task instanceof EventTask ? getSpan((EventTask) task) : null;
+        if (span == null) {
+            return;
+        }
+        root = insert(root, new Node(span[0], span[1], id, (EventTask) task));
+        starts.put(id, span[0]);
+    }
+
+    /**
+     * Removes a task from index if indexed.
+     *
+     * @param id Id of the task.
+     */
+    void remove(int id) {
+        final Long start = starts.remove(id);
+        if (start != null) {
+            root = delete(root, start, id);
+        }
+    }
+
+    /** Removes all tasks from index. */
+    void clear() {
+        root = null;
+        starts.clear();
+    }
+
+    /**
+     * Finds events that overlap a time range, including those that only touch it. O(log n) time per event found in
+     * the worst case, and O(log n) time if none is found.
+     *
+     * @param from Non-null. Start of range.
+     * @param to   Non-null. End of range.
+     * @return Overlapping events in ascending order of start time and then id.
+     */
+    List<EventTask> find(LocalDateTime from, LocalDateTime to) {
+        assert from != null;
+        assert to != null;
+        return find(toSecond(from), toSecond(to));
+    }
+
+    /**
+     * Finds events that clash with an event. Each event is taken to occupy the time from its start up to but excluding
+     * its end, or just the instant it starts if it takes no time, so back-to-back events do not clash. The event itself
+     * need not be indexed.
+     *
+     * @param event Non-null. The event in question.
+     * @return Clashing events other than {@code event} in ascending order of start time and then id, or an empty list
+     *         if the event is not indexable.
+     */
+    List<EventTask> findConflicts(EventTask event) {
+        assert event != null;
+        final long[] span = getSpan(event);
+        if (span == null) {
+            return new ArrayList<>();
+        }
+        final long start = span[0];
+        final List<EventTask> ans = find(start, span[1] == start ? start : span[1] - 1);
+        ans.removeIf(e -> {
+            final long[] otherSpan = getSpan(e);
+            return e == event || otherSpan[1] == start && otherSpan[0] < otherSpan[1]; // Ends as this one starts.
+        });
+        return ans;
+    }
+
+    /** @return Start and end seconds of event, or {@code null} if start time is not parsed. */
+    private static long[] getSpan(EventTask event) {
+        if (event.start.formatted == null) {
+            return null;
+        }
+        final long start = toSecond(event.start.formatted);
+        final long end = event.end.formatted == null ? start : Math.max(start, toSecond(event.end.formatted));
+        return new long[]{start, end};
+    }
+
+    /** @return Events whose closed interval intersects {@code [from, to]}, in tree order. */
+    private List<EventTask> find(long from, long to) {
+        final ArrayList<EventTask> ans = new ArrayList<>();
+        if (from <= to) {
+            collect(root, from, to, ans);
+        }
+        return ans;
+    }
+
+    /** Adds events in subtree whose closed interval intersects {@code [from, to]} to {@code ans} in tree order. */
+    private static void collect(Node node, long from, long to, List<EventTask> ans) {
+        if (node == null || node.maxEnd < from) {
+            return;
+        }
+        collect(node.left, from, to, ans);
+        if (node.start > to) {
+            return; // So does the right subtree.
+        }
+        if (node.end >= from) {
+            ans.add(node.event);
+        }
+        collect(node.right, from, to, ans);
+    }
+
+    /** @return Seconds since epoch, taking the time as UTC. Preserves order. */
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /** @return The new root of subtree after inserting the node. */
+    private static Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (newNode.compareTo(node.start, node.id) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return balance(node);
+    }
+
+    /** @return The new root of subtree after deleting the node with start time and id. */
+    private static Node delete(Node node, long start, int id) {
+        assert node != null;
+        final int cmp = -node.compareTo(start, id);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.right = delete(node.right, successor.start, successor.id);
+            successor.left = node.left;
+            successor.right = node.right;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static long maxEnd(Node node) {
+        return node == null ? Long.MIN_VALUE : node.maxEnd;
+    }
+
+    /** Restores AVL balance of a node whose subtrees are balanced and differ in height by at most 2. */
+    private static Node balance(Node node) {
+        final int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (diff < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        final Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        final Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static class Node {
+        private final long start;
+        private final long end;
+        private final int id;
+        private final EventTask event;
+        private Node left = null;
+        private Node right = null;
+        /** Height of subtree. */
+        private int height = 1;
+        /** Latest end time in subtree. */
+        private long maxEnd;
+
+        Node(long start, long end, int id, EventTask event) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.event = event;
+            maxEnd = end;
+        }
+
+        /** @return Comparison of this node's start time and id against the given ones. */
+        int compareTo(long otherStart, int otherId) {
+            final int cmp = Long.compare(start, otherStart);
+            return cmp != 0 ? cmp : Integer.compare(id, otherId);
+        }
+
+        /** Recomputes height and latest end time from children. */
+        void update() {
+            height = Math.max(height(left), height(right)) + 1;
+            maxEnd = Math.max(end, Math.max(maxEnd(left), maxEnd(right)));
+        }
+    }
+}
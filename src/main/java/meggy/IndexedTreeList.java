@@ -0,0 +1,237 @@
+package meggy;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * List backed by an AVL tree ordered by position, where every node knows the size of its subtree. Getting, setting,
+ * inserting and removing by index all take O(log n) time, in contrast to the O(n) insertion and removal of
+ * {@link java.util.ArrayList}. Random access is slower than arrays by a logarithmic factor, so prefer iterators for
+ * traversal.
+ *
+ * @param <E> Type of elements.
+ */
+public class IndexedTreeList<E> extends AbstractList<E> {
+    /** Root of the tree, or {@code null} if empty. */
+    private Node<E> root = null;
+    /** The element removed by the latest {@code remove}. */
+    private E removed = null;
+
+    /** @inheritDoc */
+    @Override
+    public E get(int idx) {
+        return nodeAt(idx).val;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public E set(int idx, E val) {
+        final Node<E> node = nodeAt(idx);
+        final E old = node.val;
+        node.val = val;
+        return old;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /** @inheritDoc */
+    @Override
+    public void add(int idx, E val) {
+        if (idx < 0 || idx > size()) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size());
+        }
+        root = insert(root, idx, val);
+        modCount++;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public E remove(int idx) {
+        checkIdx(idx);
+        root = delete(root, idx);
+        modCount++;
+        final E ans = removed;
+        removed = null;
+        return ans;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /** In-order traversal in O(1) amortized time per element. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            /** Ancestors whose left subtree is being traversed, nearest on top. */
+            private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+            private final int expectedModCount = modCount;
+
+            {
+                pushLeftPath(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                final Node<E> node = stack.pop();
+                pushLeftPath(node.right);
+                return node.val;
+            }
+
+            private void pushLeftPath(Node<E> node) {
+                for (; node != null; node = node.left) {
+                    stack.push(node);
+                }
+            }
+        };
+    }
+
+    private void checkIdx(int idx) {
+        if (idx < 0 || idx >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size());
+        }
+    }
+
+    private Node<E> nodeAt(int idx) {
+        checkIdx(idx);
+        Node<E> node = root;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (idx < leftSize) {
+                node = node.left;
+            } else if (idx > leftSize) {
+                idx -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /** @return The new root of subtree after inserting value at index {@code idx} of the subtree. */
+    private static <E> Node<E> insert(Node<E> node, int idx, E val) {
+        if (node == null) {
+            return new Node<>(val);
+        }
+        final int leftSize = size(node.left);
+        if (idx <= leftSize) {
+            node.left = insert(node.left, idx, val);
+        } else {
+            node.right = insert(node.right, idx - leftSize - 1, val);
+        }
+        return balance(node);
+    }
+
+    /** @return The new root of subtree after deleting the node at index {@code idx} of the subtree. */
+    private Node<E> delete(Node<E> node, int idx) {
+        final int leftSize = size(node.left);
+        if (idx < leftSize) {
+            node.left = delete(node.left, idx);
+        } else if (idx > leftSize) {
+            node.right = delete(node.right, idx - leftSize - 1);
+        } else {
+            removed = node.val;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<E> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.val = successor.val;
+            final E val = removed;
+            node.right = delete(node.right, 0);
+            removed = val;
+        }
+        return balance(node);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /** Restores AVL balance of a node whose subtrees are balanced and differ in height by at most 2. */
+    private static <E> Node<E> balance(Node<E> node) {
+        final int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (diff < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> node) {
+        final Node<E> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> node) {
+        final Node<E> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static class Node<E> {
+        private E val;
+        private Node<E> left = null;
+        private Node<E> right = null;
+        /** Height of subtree. */
+        private int height = 1;
+        /** Number of nodes in subtree. */
+        private int size = 1;
+
+        Node(E val) {
+            this.val = val;
+        }
+
+        /** Recomputes height and size from children. */
+        void update() {
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+}
@@ -1,15 +1,244 @@
 package meggy;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import javafx.application.Application;
 import meggy.gui.MainApplication;
+import meggy.server.MeggyHttpServer;
+import meggy.server.MeggyServer;
+import meggy.server.Responder;
+import meggy.server.TenantManager;
 
 /** The class that statically launches the chatbot. */
 public class Launcher {
+    /** Flag that starts headless TCP server. */
+    private static final String FLAG_SERVER = "--server";
+    /** Flag that starts headless HTTP server. */
+    private static final String FLAG_HTTP = "--http";
+    /** Flag that sets the address headless servers listen on. */
+    private static final String FLAG_HOST = "--host";
+    /** Flag that makes headless servers serve many users, each with a data file in a directory. */
+    private static final String FLAG_TENANTS = "--tenants";
+    /** Flag that runs a batch of commands from a script or standard input. */
+    private static final String FLAG_BATCH = "--batch";
+    /** Flag that suppresses responses of batch commands. */
+    private static final String FLAG_QUIET = "--quiet";
+    /** Flag that prints a summary after batch commands. */
+    private static final String FLAG_SUMMARY = "--summary";
+
     /** @deprecated Launcher class should not be initialized. */
     private Launcher() {
     }
 
+    /**
+     * Opens the chat window, runs a batch of commands if batch flag is given, or runs headless servers if any server
+     * flag is given.
+     *
+     * @param args See {@code Resource.USAGE_LAUNCHER}.
+     */
     public static void main(String[] args) {
-        Application.launch(MainApplication.class, args);
+        if (args.length == 0) {
+            Application.launch(MainApplication.class, args);
+            return;
+        }
+        int tcpPort = -1;
+        int httpPort = -1;
+        String host = null;
+        String tenantsDir = null;
+        boolean isBatch = false;
+        String script = null;
+        boolean isQuiet = false;
+        boolean isSummarized = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case FLAG_SERVER:
+                    tcpPort = hasValue(args, i) ? Integer.parseInt(args[++i]) : Util.SERVER_PORT;
+                    break;
+                case FLAG_HTTP:
+                    httpPort = hasValue(args, i) ? Integer.parseInt(args[++i]) : Util.HTTP_PORT;
+                    break;
+                case FLAG_HOST:
+                    if (!hasValue(args, i)) {
+                        throw new IllegalArgumentException();
+                    }
+                    host = args[++i];
+                    break;
+                case FLAG_TENANTS:
+                    if (!hasValue(args, i)) {
+                        throw new IllegalArgumentException();
+                    }
+                    tenantsDir = args[++i];
+                    break;
+                case FLAG_BATCH:
+                    isBatch = true;
+                    script = hasValue(args, i) ? args[++i] : null;
+                    break;
+                case FLAG_QUIET:
+                    isQuiet = true;
+                    break;
+                case FLAG_SUMMARY:
+                    isSummarized = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException();
+                }
+            }
+            final boolean isServer = tcpPort >= 0 || httpPort >= 0;
+            final boolean hasServerOption = host != null || tenantsDir != null;
+            final boolean hasBatchOption = isQuiet || isSummarized;
+            if (isBatch ? isServer || hasServerOption : !isServer || hasBatchOption) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) { // Including NumberFormatException.
+            System.err.print(Resource.USAGE_LAUNCHER);
+            System.exit(2);
+            return;
+        }
+        if (isBatch) {
+            runBatch(script, isQuiet, isSummarized);
+            return;
+        }
+        try {
+            final InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+            if (tenantsDir == null) {
+                serve(address, tcpPort, httpPort);
+            } else {
+                serveTenants(new File(tenantsDir), address, tcpPort, httpPort);
+            }
+        } catch (IOException e) {
+            System.err.println(Resource.ERR_BASE + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a batch of commands on the chatbot of the default data file, and prints responses to standard output. Saves
+     * all changes at the end, or when the process is terminated halfway.
+     *
+     * @param script       Path of script file, or {@code null} to read standard input.
+     * @param isQuiet      Whether responses are not printed.
+     * @param isSummarized Whether to print the number of commands and time spent at the end.
+     */
+    private static void runBatch(String script, boolean isQuiet, boolean isSummarized) {
+        final long start = System.nanoTime();
+        final Meggy meggy = new Meggy(new File(Util.DATA_FILE_PATH), true);
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)),
+                Util.BATCH_OUTPUT_BUFFER_SIZE);
+        final BatchRunner runner = new BatchRunner(meggy, out, isQuiet);
+        final Thread saver = new Thread(meggy::close);
+        Runtime.getRuntime().addShutdownHook(saver);
+        try {
+            if (script == null) {
+                runner.run(new FileInputStream(FileDescriptor.in).getChannel());
+            } else {
+                runner.run(new File(script));
+            }
+            runner.finish(isSummarized, start);
+        } catch (IOException e) {
+            System.err.println(Resource.ERR_BASE + e.getMessage());
+            meggy.close();
+            System.exit(1);
+        }
+        Runtime.getRuntime().removeShutdownHook(saver);
+    }
+
+    /** @return Whether the flag at index is followed by a value rather than another flag. */
+    private static boolean hasValue(String[] args, int i) {
+        return i + 1 < args.length && !args[i + 1].startsWith("--");
+    }
+
+    /**
+     * Runs headless servers on the chatbot of the default data file until the process is terminated, when all changes
+     * are saved.
+     *
+     * @param address  Non-null. Address to listen on.
+     * @param tcpPort  Port of TCP server, or negative if not served.
+     * @param httpPort Port of HTTP server, or negative if not served.
+     * @throws IOException If any server fails to start.
+     */
+    private static void serve(InetAddress address, int tcpPort, int httpPort) throws IOException {
+        final Meggy meggy = new Meggy(new File(Util.DATA_FILE_PATH), true);
+        meggy.enableBatchedSave(Util.SAVE_INTERVAL_MILLIS, Util.SAVE_MAX_PENDING);
+        final Responder responder = new Responder(meggy, System.out::print);
+        final List<AutoCloseable> servers = new CopyOnWriteArrayList<>();
+        closeOnShutdown(servers, meggy::close);
+        if (tcpPort >= 0) {
+            final MeggyServer server = new MeggyServer(responder, new InetSocketAddress(address, tcpPort),
+                    Util.SERVER_MAX_CLIENTS, Util.SERVER_BACKLOG, Util.SERVER_MAX_LINE_LENGTH,
+                    Util.SERVER_IDLE_TIMEOUT_MILLIS, System.err::println);
+            servers.add(server);
+            server.start();
+            System.out.print(Resource.fmtNotifServing("TCP", address.getHostAddress(), server.getPort()));
+        }
+        if (httpPort >= 0) {
+            final MeggyHttpServer server = new MeggyHttpServer(responder, new InetSocketAddress(address, httpPort),
+                    Util.SERVER_MAX_CLIENTS, Util.HTTP_MAX_BODY_LENGTH);
+            servers.add(server);
+            server.start();
+            System.out.print(Resource.fmtNotifServing("HTTP", address.getHostAddress(), server.getPort()));
+        }
+    }
+
+    /**
+     * Runs headless servers on chatbots of many users, whose data files are in a directory, until the process is
+     * terminated, when all changes are saved.
+     *
+     * @param dir      Non-null. Directory of data files.
+     * @param address  Non-null. Address to listen on.
+     * @param tcpPort  Port of TCP server, or negative if not served.
+     * @param httpPort Port of HTTP server, or negative if not served.
+     * @throws IOException If any server fails to start.
+     */
+    private static void serveTenants(File dir, InetAddress address, int tcpPort, int httpPort) throws IOException {
+        final TenantManager tenants = new TenantManager(dir, Util.TENANT_CAPACITY, Util.TENANT_IDLE_MILLIS,
+                Util.TENANT_MAX_HEAP_FRACTION, System.err::print);
+        final List<AutoCloseable> servers = new CopyOnWriteArrayList<>();
+        closeOnShutdown(servers, tenants::close);
+        if (tcpPort >= 0) {
+            final MeggyServer server = new MeggyServer(tenants, new InetSocketAddress(address, tcpPort),
+                    Util.SERVER_MAX_CLIENTS, Util.SERVER_BACKLOG, Util.SERVER_MAX_LINE_LENGTH,
+                    Util.SERVER_IDLE_TIMEOUT_MILLIS, System.err::println);
+            servers.add(server);
+            server.start();
+            System.out.print(Resource.fmtNotifServing("TCP", address.getHostAddress(), server.getPort()));
+        }
+        if (httpPort >= 0) {
+            final MeggyHttpServer server = new MeggyHttpServer(tenants, new InetSocketAddress(address, httpPort),
+                    Util.SERVER_MAX_CLIENTS, Util.HTTP_MAX_BODY_LENGTH);
+            servers.add(server);
+            server.start();
+            System.out.print(Resource.fmtNotifServing("HTTP", address.getHostAddress(), server.getPort()));
+        }
+    }
+
+    /**
+     * Closes servers and then saves changes when the process is terminated.
+     *
+     * @param servers Non-null. Servers to close, which may be added later.
+     * @param save    Non-null. Saves all changes.
+     */
+    private static void closeOnShutdown(List<AutoCloseable> servers, Runnable save) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (AutoCloseable server : servers) {
+                try {
+                    server.close();
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            save.run();
+        }));
     }
 }
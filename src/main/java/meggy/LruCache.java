@@ -0,0 +1,196 @@
+package meggy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Thread-safe bounded cache that evicts the least recently used entry when full. Values are computed outside the lock,
+ * so a slow computation does not block other threads; if two threads compute the same key at once, the first value
+ * stored wins.
+ *
+ * @param <K> Type of keys.
+ * @param <V> Type of values. Should be immutable, as values are shared among all callers.
+ */
+public class LruCache<K, V> {
+    /** Entries in access order, least recently used first. */
+    private final LinkedHashMap<K, V> map;
+    /** Called on every entry evicted to make room, while holding the lock. */
+    private final BiConsumer<K, V> onEvict;
+    /** Maximum number of entries. */
+    private int capacity;
+    private long nHits = 0;
+    private long nMisses = 0;
+
+    /**
+     * @param capacity Positive. Maximum number of entries.
+     * @param onEvict  Non-null. Called on every entry evicted to make room, while holding the lock.
+     */
+    public LruCache(int capacity, BiConsumer<K, V> onEvict) {
+        assert capacity > 0;
+        assert onEvict != null;
+        this.capacity = capacity;
+        this.onEvict = onEvict;
+        map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= LruCache.this.capacity) {
+                    return false;
+                }
+                onEvict.accept(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /** @param capacity Positive. Maximum number of entries. */
+    public LruCache(int capacity) {
+        this(capacity, (k, v) -> {
+        });
+    }
+
+    /**
+     * Gets the cached value of key, or computes, caches and returns it if absent.
+     *
+     * @param key     Non-null. The key.
+     * @param compute Non-null. Computes the value of an absent key. Must not return {@code null}.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+        assert key != null;
+        synchronized (this) {
+            final V cached = map.get(key);
+            if (cached != null) {
+                nHits++;
+                return cached;
+            }
+            nMisses++;
+        }
+        final V value = compute.apply(key);
+        assert value != null;
+        synchronized (this) {
+            final V raced = map.putIfAbsent(key, value);
+            return raced == null ? value : raced;
+        }
+    }
+
+    /**
+     * Gets the cached value of key without computing it. Counts as a hit or miss.
+     *
+     * @param key Non-null. The key.
+     * @return The cached value, or {@code null} if absent.
+     */
+    public synchronized V get(K key) {
+        assert key != null;
+        final V cached = map.get(key);
+        if (cached == null) {
+            nMisses++;
+        } else {
+            nHits++;
+        }
+        return cached;
+    }
+
+    /**
+     * Gets the cached value of key without counting a hit or miss, such as to check again after a counted miss.
+     *
+     * @param key Non-null. The key.
+     * @return The cached value, or {@code null} if absent.
+     */
+    public synchronized V peek(K key) {
+        assert key != null;
+        return map.get(key);
+    }
+
+    /**
+     * Caches a value unless key already has one, evicting the least recently used entry if full.
+     *
+     * @param key   Non-null. The key.
+     * @param value Non-null. The value.
+     * @return The value already cached, or {@code null} if {@code value} is cached.
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        assert key != null;
+        assert value != null;
+        return map.putIfAbsent(key, value);
+    }
+
+    /**
+     * Removes an entry without calling the eviction listener.
+     *
+     * @param key Non-null. The key.
+     * @return The removed value, or {@code null} if absent.
+     */
+    public synchronized V remove(K key) {
+        assert key != null;
+        return map.remove(key);
+    }
+
+    /**
+     * Changes the maximum number of entries, evicting the least recently used entries if there are more.
+     *
+     * @param capacity Positive. New maximum number of entries.
+     */
+    public synchronized void setCapacity(int capacity) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        final Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (map.size() > capacity) {
+            final Map.Entry<K, V> eldest = it.next();
+            it.remove();
+            onEvict.accept(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Evicts entries from the least recently used one, as long as the next one to be evicted meets a condition. Calls
+     * the eviction listener on every entry evicted.
+     *
+     * @param condition Non-null. Tested on the least recently used entry, while holding the lock.
+     * @return Number of entries evicted.
+     */
+    public synchronized int evictWhile(BiPredicate<K, V> condition) {
+        assert condition != null;
+        int nEvicted = 0;
+        final Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<K, V> eldest = it.next();
+            if (!condition.test(eldest.getKey(), eldest.getValue())) {
+                break;
+            }
+            it.remove();
+            onEvict.accept(eldest.getKey(), eldest.getValue());
+            nEvicted++;
+        }
+        return nEvicted;
+    }
+
+    /** Removes all entries without calling the eviction listener, and resets counters. */
+    public synchronized void clear() {
+        map.clear();
+        nHits = 0;
+        nMisses = 0;
+    }
+
+    /** Gets the maximum number of entries. */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /** Gets the current number of entries. */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /** Gets the number of lookups that found a cached value. */
+    public synchronized long getHitCount() {
+        return nHits;
+    }
+
+    /** Gets the number of lookups that found no cached value. */
+    public synchronized long getMissCount() {
+        return nMisses;
+    }
+}
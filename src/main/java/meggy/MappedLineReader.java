@@ -0,0 +1,145 @@
+package meggy;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import meggy.exception.Consumer;
+import meggy.exception.MeggyException;
+
+/**
+ * Reads lines of a file through memory-mapped windows, without regular expressions. Only the current window is mapped
+ * and only the current line is copied onto heap, so memory usage does not grow with file size.
+ * <p>
+ * Lines are separated by line feed, carriage return, or both in sequence. A trailing line separator does not start an
+ * extra empty line.
+ */
+class MappedLineReader {
+    /** Default size of mapped windows. */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+    /** The file to read. */
+    private final FileChannel ch;
+    /** Encoding of file. */
+    private final Charset charset;
+    /** Size of mapped windows, grown when a single line does not fit. */
+    private long windowSize;
+    /** Reused buffer of the bytes of current line. */
+    private byte[] lineBytes = new byte[256];
+    /** Number of lines read. */
+    private long nLines = 0;
+    /** Number of lines that {@code consumer} failed to accept. */
+    private long nFailedLines = 0;
+
+    /**
+     * @param ch         Non-null. The file to read.
+     * @param charset    Non-null. Encoding of file. Line separators must be encoded as single ASCII bytes.
+     * @param windowSize Positive. Size of mapped windows.
+     */
+    MappedLineReader(FileChannel ch, Charset charset, int windowSize) {
+        assert ch != null;
+        assert charset != null;
+        assert windowSize > 0;
+        this.ch = ch;
+        this.charset = charset;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Passes every line from position {@code from} to position {@code to} to {@code consumer} in order. Lines that
+     * {@code consumer} fails to accept are skipped.
+     *
+     * @param from     Non-negative. Position of the first byte of the first line.
+     * @param to       Position right after the last byte to read. Must be the file size or right after a line feed.
+     * @param consumer Non-null. Accepts lines.
+     * @throws IOException If mapping or reading file fails.
+     */
+    void forEachLine(long from, long to, Consumer<String> consumer) throws IOException {
+        assert consumer != null;
+        long windowStart = from;
+        while (windowStart < to) {
+            final long len = Math.min(windowSize, to - windowStart);
+            final boolean isLastWindow = windowStart + len >= to;
+            final MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, windowStart, len);
+            final int limit = window.limit();
+            int lineStart = 0;
+            int i = 0;
+            while (i < limit) {
+                final byte b = window.get(i);
+                if (b != '\n' && b != '\r') {
+                    i++;
+                    continue;
+                }
+                if (b == '\r' && i + 1 >= limit && !isLastWindow) {
+                    break; // Can't tell whether a line feed follows. Read it again in next window.
+                }
+                accept(consumer, decode(window, lineStart, i));
+                i += b == '\r' && i + 1 < limit && window.get(i + 1) == '\n' ? 2 : 1;
+                lineStart = i;
+            }
+            if (isLastWindow) {
+                if (lineStart < limit) {
+                    accept(consumer, decode(window, lineStart, limit));
+                }
+                return;
+            }
+            if (lineStart == 0) {
+                windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE); // The line is longer than a window.
+            }
+            windowStart += lineStart;
+        }
+    }
+
+    /**
+     * Finds the position right after the first line feed at or after a position.
+     *
+     * @param pos Non-negative. Where to start looking.
+     * @return The position, or file size if there is no line feed at or after {@code pos}.
+     * @throws IOException If mapping or reading file fails.
+     */
+    long nextLineStart(long pos) throws IOException {
+        final long size = ch.size();
+        while (pos < size) {
+            final int len = (int) Math.min(windowSize, size - pos);
+            final MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                if (window.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    /** Gets number of lines read. */
+    long getLineCount() {
+        return nLines;
+    }
+
+    /** Gets number of lines that consumers failed to accept. */
+    long getFailedLineCount() {
+        return nFailedLines;
+    }
+
+    /** Passes line to consumer and updates counters. */
+    private void accept(Consumer<String> consumer, String line) {
+        nLines++;
+        try {
+            consumer.accept(line);
+        } catch (MeggyException e) {
+            nFailedLines++;
+        }
+    }
+
+    /** Decodes bytes of window from index {@code start} (inclusive) to {@code end} (exclusive). */
+    private String decode(MappedByteBuffer window, int start, int end) {
+        final int len = end - start;
+        if (lineBytes.length < len) {
+            lineBytes = new byte[Math.max(len, lineBytes.length * 2)];
+        }
+        window.position(start);
+        window.get(lineBytes, 0, len);
+        return new String(lineBytes, 0, len, charset);
+    }
+}
@@ -1,12 +1,21 @@
 package meggy;
 
 import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
 import meggy.exception.Function;
 import meggy.exception.MeggyException;
 import meggy.exception.MeggyNoArgException;
+import meggy.task.EventTask;
 import meggy.task.UserTask;
 
 /** The chatbot. After initialization, interact by calling {@code getResponse} method. */
@@ -15,6 +24,8 @@ public class Meggy {
     public static final Function<String, String> NOTIFY_UNKNOWN_CMD = s -> {
         throw new MeggyException(Resource.fmtErrUnknownCmd(Parser.get1stArg(s)));
     };
+    /** 'And' keyword of 'due between' query formatted to be looked up in user input during parsing. */
+    private static final String AND_KEYWORD_FORMATTED = UserTask.fmtKeyword(Resource.KW_AND);
     /**
      * What to do when reaching different commands.
      * <p>
@@ -24,6 +35,13 @@ public class Meggy {
      * function that modifies task list and write to file if the command requires so.
      */
     public final Map<String, Function<String, String>> cmdToJob;
+    /** Commands whose long responses can be streamed in chunks, and their streaming jobs. */
+    private final Map<String, StreamJob> cmdToStreamJob = Map.of(
+            Resource.CMD_LIST, this::list,
+            Resource.CMD_FIND, this::find,
+            Resource.CMD_DUE, this::due,
+            Resource.CMD_AGENDA, this::agenda
+    );
     /** List of tasks. Allows dupes. */
     private final TaskList tasks;
     /** Location to save cross-session data. */
@@ -31,63 +49,237 @@ public class Meggy {
     /** Switch that enables/disables write to storage file. */
     private boolean fileWrite = true;
     /** Channel to send extra message. */
-    private Consumer<String> notifMsgSender = System.out::println;
+    private volatile Consumer<String> notifMsgSender = System.out::println;
+    /**
+     * Guards all mutable state. Commands that only read task list share the read lock, so that they run in parallel.
+     * All other commands, loading, and saving take the write lock, so that changes are linearizable.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Commands that only read task list. */
+    private final Set<String> readCmds = Set.of(Resource.CMD_LIST, Resource.CMD_FIND, Resource.CMD_DUE,
+            Resource.CMD_AGENDA);
+    /** Changes not yet committed to storage file, as replay commands. */
+    private final ArrayList<String> pendingRecords = new ArrayList<>();
+    /** Schedules background commit of {@code pendingRecords}, or {@code null} if not saving in the background. */
+    private SaveScheduler saveScheduler = null;
+    /** Whether changes are kept pending until {@code flush}, rather than saved immediately, without a scheduler. */
+    private boolean isSaveDeferred = false;
 
-    /** Creates a chatbot agent instance. */
-    public Meggy(File storageFile) {
-        tasks = new TaskList();
-        cmdToJob = Map.of(
-                Resource.CMD_EXIT, s -> Resource.FAREWELL,
-                Resource.CMD_LIST, s -> Resource.NOTIF_LIST + tasks,
-                Resource.CMD_MARK, s -> markTaskStatus(s, true),
-                Resource.CMD_UNMK, s -> markTaskStatus(s, false),
-                Resource.CMD_TODO, s -> addTask(s, Util.TODO_NEW),
-                Resource.CMD_DDL, s -> addTask(s, Util.DDL_NEW),
-                Resource.CMD_EVENT, s -> addTask(s, Util.EVENT_NEW),
-                Resource.CMD_DEL, this::deleteTask,
-                Resource.CMD_FIND, this::find
+    /**
+     * Creates a chatbot agent instance.
+     *
+     * @param storage Non-null. Where to save cross-session data.
+     */
+    public Meggy(Storage storage) {
+        assert storage != null;
+        tasks = new TaskList(Util.TASK_LIST_BACKING);
+        cmdToJob = Map.ofEntries(
+                Map.entry(Resource.CMD_EXIT, s -> {
+                    flush();
+                    return Resource.FAREWELL;
+                }),
+                Map.entry(Resource.CMD_LIST, s -> collect(this::list, s)),
+                Map.entry(Resource.CMD_MARK, s -> markTaskStatus(s, true)),
+                Map.entry(Resource.CMD_UNMK, s -> markTaskStatus(s, false)),
+                Map.entry(Resource.CMD_TODO, s -> addTask(s, Util.TODO_NEW)),
+                Map.entry(Resource.CMD_DDL, s -> addTask(s, Util.DDL_NEW)),
+                Map.entry(Resource.CMD_EVENT, s -> addTask(s, Util.EVENT_NEW)),
+                Map.entry(Resource.CMD_DEL, this::deleteTask),
+                Map.entry(Resource.CMD_FIND, s -> collect(this::find, s)),
+                Map.entry(Resource.CMD_DUE, s -> collect(this::due, s)),
+                Map.entry(Resource.CMD_AGENDA, s -> collect(this::agenda, s))
         );
-        storage = new Storage(storageFile);
+        this.storage = storage;
+    }
+
+    /**
+     * Creates a chatbot agent instance that saves data in text format.
+     *
+     * @param storageFile Non-null. The file to save cross-session data.
+     * @param isJournaled Whether to append changes to storage file instead of rewriting it entirely on every change.
+     */
+    public Meggy(File storageFile, boolean isJournaled) {
+        this(new Storage(storageFile, isJournaled));
+    }
+
+    /**
+     * Creates a chatbot agent instance that rewrites storage file entirely in text format on every save.
+     *
+     * @param storageFile Non-null. The file to save cross-session data.
+     */
+    public Meggy(File storageFile) {
+        this(new Storage(storageFile));
+    }
+
+    /**
+     * Enables batched saving: changes are committed to storage file on a background thread, at most
+     * {@code intervalMillis} milliseconds after they are made or as soon as {@code maxPending} changes are pending.
+     *
+     * @param intervalMillis Positive. Maximum delay in milliseconds before a change is saved.
+     * @param maxPending     Positive. Number of unsaved changes that triggers an immediate save.
+     */
+    public void enableBatchedSave(long intervalMillis, int maxPending) {
+        setSaveScheduler(new SaveScheduler(this::flush, intervalMillis, maxPending));
+    }
+
+    /**
+     * Enables batched saving like {@code enableBatchedSave(long, int)}, but commits changes on a shared executor
+     * instead of a thread of this chatbot's own.
+     *
+     * @param intervalMillis Positive. Maximum delay in milliseconds before a change is saved.
+     * @param maxPending     Positive. Number of unsaved changes that triggers an immediate save.
+     * @param executor       Non-null. Commits changes. Not stopped by {@code close}.
+     */
+    public void enableBatchedSave(long intervalMillis, int maxPending, ScheduledExecutorService executor) {
+        setSaveScheduler(new SaveScheduler(this::flush, intervalMillis, maxPending, executor));
+    }
+
+    /**
+     * Defers saving changes until {@code flush} or {@code close} is called, so that a batch of many commands is saved
+     * in one go. Has no effect on background saving if it is enabled.
+     */
+    public void deferSave() {
+        lock.writeLock().lock();
+        try {
+            isSaveDeferred = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the scheduler of batched saving, saving changes pending in the old one. */
+    private void setSaveScheduler(SaveScheduler scheduler) {
+        final SaveScheduler old;
+        lock.writeLock().lock();
+        try {
+            old = saveScheduler;
+            saveScheduler = scheduler;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /** Commits all pending changes to storage file on the caller thread. */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            commitPending();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Saves all pending changes and stops batched saving. */
+    public void close() {
+        final SaveScheduler scheduler;
+        lock.writeLock().lock();
+        try {
+            scheduler = saveScheduler;
+            saveScheduler = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flush();
     }
 
-    /** Saves task list to storage file. Redirects {@link MeggyException} to {@code notifMsgSender} */
-    private void saveListToFile() {
+    /**
+     * Saves the change to task list to storage file, either immediately or in a later batch.
+     *
+     * @param record Non-null. The command that makes the change when replayed after the current storage file content.
+     */
+    private void saveListToFile(String record) {
+        assert record != null;
         if (!fileWrite) {
             return;
         }
+        pendingRecords.add(record);
+        if (saveScheduler != null) {
+            saveScheduler.onChange();
+        } else if (!isSaveDeferred) {
+            commitPending();
+        }
+    }
+
+    /**
+     * Commits {@code pendingRecords} to storage file. The caller must hold the write lock. Records are only dropped
+     * once committed, so that changes that failed to save are retried with the next commit. Redirects
+     * {@link MeggyException} to {@code notifMsgSender}.
+     */
+    private void commitPending() {
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
         try {
-            storage.save(tasks);
+            storage.commit(tasks, List.copyOf(pendingRecords));
+            pendingRecords.clear();
         } catch (MeggyException e) {
             notifMsgSender.accept(e.getMessage());
         }
     }
 
     /**
-     * Updates the status of the user task specified by index.
+     * Parses indices and ranges of indices of tasks, all of which must be within bounds. Sends usage notification on
+     * failure.
      *
-     * @param args      Non-null. Index (start with 1) string of task to be updated or invalid input.
-     * @param newStatus The task's updated status.
-     * @return Response to 'mark/unmark' command.
+     * @param args Non-null. Indices (start with 1) and ranges string or invalid input.
+     * @param cmd  Non-null. Index command (delete/mark/unmark only).
+     * @return Non-empty set of indices (start with 0).
+     * @throws MeggyException If any index can't be parsed or is out of bounds.
      */
-    private String markTaskStatus(String args, boolean newStatus) throws MeggyException {
+    private BitSet parseIdxs(String args, String cmd) throws MeggyException {
         assert args != null;
-        final int idx;
+        final BitSet ans = new BitSet();
         try {
-            idx = Parser.parseIdx(args);
-            tasks.boundsCheck(idx);
+            final List<Parser.IdxRange> ranges = Parser.parseIdxRanges(args);
+            for (Parser.IdxRange range : ranges) { // Check all before allocating, as ranges may be huge.
+                tasks.boundsCheck(range.from);
+                tasks.boundsCheck(range.to);
+            }
+            for (Parser.IdxRange range : ranges) {
+                ans.set(range.from, range.to + 1);
+            }
         } catch (MeggyException e) {
-            notifMsgSender.accept(Util.fmrUsageOfIdxCmd(newStatus ? Resource.CMD_MARK : Resource.CMD_UNMK));
+            notifMsgSender.accept(Util.fmrUsageOfIdxCmd(cmd));
             throw e;
         }
-        final UserTask task = tasks.get(idx);
-        task.setDone(newStatus);
-        saveListToFile();
-        return (newStatus ? Resource.NOTIF_MARK : Resource.NOTIF_UNMK) + Resource.TASK_STRING_INDENT + task + '\n';
+        return ans;
+    }
+
+    /**
+     * Updates the status of the user tasks specified by indices and ranges of indices. Nothing is updated if any index
+     * is invalid.
+     *
+     * @param args      Non-null. Indices (start with 1) and ranges string of tasks to be updated or invalid input.
+     * @param newStatus The tasks' updated status.
+     * @return Response to 'mark/unmark' command.
+     */
+    private String markTaskStatus(String args, boolean newStatus) throws MeggyException {
+        final String cmd = newStatus ? Resource.CMD_MARK : Resource.CMD_UNMK;
+        final BitSet idxs = parseIdxs(args, cmd);
+        if (idxs.cardinality() == 1) {
+            final int idx = idxs.nextSetBit(0);
+            final UserTask task = tasks.setDone(idx, newStatus);
+            saveListToFile(Parser.fmtIdxCmd(cmd, idx));
+            return (newStatus ? Resource.NOTIF_MARK : Resource.NOTIF_UNMK) + Resource.TASK_STRING_INDENT + task + '\n';
+        }
+        final StringBuilder ans = new StringBuilder(newStatus ? Resource.NOTIF_MARK_BATCH : Resource.NOTIF_UNMK_BATCH);
+        for (int i = idxs.nextSetBit(0); i >= 0; i = idxs.nextSetBit(i + 1)) {
+            final UserTask task = tasks.setDone(i, newStatus);
+            ans.append(Resource.TASK_STRING_INDENT).append(task).append('\n');
+        }
+        saveListToFile(Parser.fmtIdxsCmd(cmd, idxs));
+        return ans.toString();
     }
 
     /**
      * Adds task to the bottom of {@code tasks} list if an equivalent task is not already in the list. Otherwise,
-     * nothing is changed. O(n) time complexity.
+     * nothing is changed. O(1) expected time complexity, excluding file write.
      *
      * @param args    Non-null. Unparsed task description string.
      * @param taskNew Non-null. Constructor of task to accept {@code args}.
@@ -100,30 +292,58 @@ public class Meggy {
         if (tasks.contains(newTask)) {
             throw new MeggyException(Resource.ERR_DUPE_TASK + Resource.TASK_STRING_INDENT + newTask);
         }
+        // Clashes are not worth finding while loading, as nobody reads the response.
+        final List<EventTask> conflicts = fileWrite && newTask instanceof EventTask
+                ? tasks.findConflicts((EventTask) newTask) : List.of();
         tasks.add(newTask);
-        saveListToFile();
-        return Resource.NOTIF_ADD + reportChangedTaskAndList(newTask);
+        saveListToFile(newTask.recreateCmd());
+        final String ans = Resource.NOTIF_ADD + reportChangedTaskAndList(newTask);
+        if (conflicts.isEmpty()) {
+            return ans;
+        }
+        final StringBuilder warning = new StringBuilder(ans).append(Resource.NOTIF_CONFLICT);
+        for (EventTask conflict : conflicts) {
+            warning.append(Resource.TASK_STRING_INDENT).append(conflict).append('\n');
+        }
+        return warning.toString();
     }
 
     /**
-     * Deletes task from {@code tasks} list. Currently O(n) runtime.
+     * Adds task loaded from storage file to the bottom of {@code tasks} list, unless an equivalent task is already in
+     * the list.
      *
-     * @param arg Non-null. Index (start with 1) string of task to be updated.
+     * @param task Non-null. The loaded task.
+     * @throws MeggyException If an equivalent task is already in the list.
+     */
+    private void addLoadedTask(UserTask task) throws MeggyException {
+        assert task != null;
+        if (tasks.contains(task)) {
+            throw new MeggyException(Resource.ERR_DUPE_TASK + Resource.TASK_STRING_INDENT + task);
+        }
+        tasks.add(task);
+    }
+
+    /**
+     * Deletes tasks specified by indices and ranges of indices from {@code tasks} list in one pass. Nothing is deleted
+     * if any index is invalid. O(log n) runtime per deleted task with the default {@code Util.TASK_LIST_BACKING}.
+     *
+     * @param arg Non-null. Indices (start with 1) and ranges string of tasks to be deleted.
      * @return Response to 'delete' command.
      */
     private String deleteTask(String arg) throws MeggyException {
-        assert arg != null;
-        final int idx;
-        try {
-            idx = Parser.parseIdx(arg);
-            tasks.boundsCheck(idx);
-        } catch (MeggyException e) {
-            notifMsgSender.accept(Util.fmrUsageOfIdxCmd(Resource.CMD_DEL));
-            throw e;
+        final BitSet idxs = parseIdxs(arg, Resource.CMD_DEL);
+        if (idxs.cardinality() == 1) {
+            final int idx = idxs.nextSetBit(0);
+            final UserTask task = tasks.remove(idx);
+            saveListToFile(Parser.fmtIdxCmd(Resource.CMD_DEL, idx));
+            return Resource.NOTIF_DEL + reportChangedTaskAndList(task);
         }
-        final UserTask task = tasks.remove(idx);
-        saveListToFile();
-        return Resource.NOTIF_DEL + reportChangedTaskAndList(task);
+        final StringBuilder ans = new StringBuilder(Resource.NOTIF_DEL_BATCH);
+        for (UserTask task : tasks.removeIdxs(idxs)) {
+            ans.append(Resource.TASK_STRING_INDENT).append(task).append('\n');
+        }
+        saveListToFile(Parser.fmtIdxsCmd(Resource.CMD_DEL, idxs));
+        return ans.append(Resource.fmtTaskCnt(tasks.size())).toString();
     }
 
     /**
@@ -137,28 +357,175 @@ public class Meggy {
     }
 
     /**
-     * Lists all the tasks with description containing the keyword.
+     * Lists all tasks, or a page of tasks if the start index (starts with 1) and optionally the maximum number of tasks
+     * are given. Tasks are numbered by their indices in list.
      *
-     * @param substring Non-null. The keyword to look for.
-     * @return The printable string of the listed tasks.
+     * @param args Non-null. Empty, or start index and optional count.
+     * @param sink Non-null. Accepts the printable string of the listed tasks in chunks.
+     * @throws MeggyException If start index is out of bounds or count is not positive.
+     */
+    private void list(String args, Consumer<String> sink) throws MeggyException {
+        assert args != null;
+        if (args.isEmpty()) {
+            sink.accept(Resource.NOTIF_LIST);
+            TaskList.render(tasks, 0, sink);
+            return;
+        }
+        final int from;
+        final int count;
+        try {
+            from = Parser.parseIdx(args);
+            tasks.boundsCheck(from);
+            final String countArg = args.substring(Parser.get1stArg(args).length()).trim();
+            count = countArg.isEmpty() ? tasks.size() : Parser.parseCount(countArg);
+        } catch (MeggyException e) {
+            notifMsgSender.accept(Resource.NOTIF_USAGE + Resource.USAGE_LIST);
+            throw e;
+        }
+        final int to = (int) Math.min(tasks.size(), (long) from + count);
+        sink.accept(Resource.fmtListPage(from, to, tasks.size()));
+        TaskList.render(tasks.subList(from, to), from, sink);
+    }
+
+    /**
+     * Lists the tasks with description containing the keyword, optionally up to a maximum number given after
+     * {@code Resource.KW_LIMIT}.
+     *
+     * @param args Non-null. The keyword to look for, and optional limit.
+     * @param sink Non-null. Accepts the printable string of the listed tasks in chunks.
      * @throws MeggyNoArgException If user search keyword is blank.
+     * @throws MeggyException      If limit is not positive.
      */
-    private String find(String substring) throws MeggyNoArgException {
-        assert substring != null;
+    private void find(String args, Consumer<String> sink) throws MeggyException {
+        assert args != null;
+        String substring = args;
+        int limit = Integer.MAX_VALUE;
+        final int kwIdx = args.lastIndexOf(Resource.KW_LIMIT);
+        final int kwEnd = kwIdx + Resource.KW_LIMIT.length();
+        if (kwIdx >= 0 && (kwIdx == 0 || args.charAt(kwIdx - 1) == ' ')
+                && (kwEnd == args.length() || args.charAt(kwEnd) == ' ')) {
+            try {
+                limit = Parser.parseCount(args.substring(kwEnd).trim());
+            } catch (MeggyException e) {
+                notifMsgSender.accept(Resource.NOTIF_USAGE + Resource.USAGE_FIND);
+                throw e;
+            }
+            substring = args.substring(0, kwIdx).trim();
+        }
         if (substring.isEmpty()) {
             throw new MeggyNoArgException();
         }
-        final TaskList ans = new TaskList();
-        for (UserTask task : tasks) {
-            if (task.desc.contains(substring)) {
-                ans.add(task);
+        sink.accept(Resource.NOTIF_FIND);
+        TaskList.render(tasks.find(substring, limit), 0, sink);
+    }
+
+    /**
+     * Lists unfinished deadlines and events due before, after, or between times, or those due at user-customized times.
+     *
+     * @param args Non-null. Query keyword and times.
+     * @param sink Non-null. Accepts the printable string of the listed tasks in chunks.
+     * @throws MeggyException If query keyword is unknown, a time can't be parsed, or a range ends before it starts.
+     */
+    private void due(String args, Consumer<String> sink) throws MeggyException {
+        assert args != null;
+        final String query = Parser.get1stArg(args);
+        final String times = args.substring(query.length()).trim();
+        final List<UserTask> found;
+        try {
+            switch (query.toLowerCase()) {
+            case Resource.KW_BEFORE:
+                found = tasks.findDue(null, false, Parser.parseTime(times), false);
+                break;
+            case Resource.KW_AFTER:
+                found = tasks.findDue(Parser.parseTime(times), false, null, false);
+                break;
+            case Resource.KW_BETWEEN:
+                final int kwIdx = times.indexOf(AND_KEYWORD_FORMATTED);
+                if (kwIdx < 0) {
+                    throw new MeggyNoArgException();
+                }
+                final LocalDateTime from = Parser.parseTime(times.substring(0, kwIdx).trim());
+                final String toTime = times.substring(kwIdx + AND_KEYWORD_FORMATTED.length()).trim();
+                final LocalDateTime to = Parser.parseTime(toTime);
+                if (from.isAfter(to)) {
+                    throw new MeggyException(Resource.ERR_TIME_RANGE);
+                }
+                found = tasks.findDue(from, true, to, true);
+                break;
+            case Resource.KW_OVERDUE:
+                found = tasks.findDue(null, false, LocalDateTime.now(), false);
+                break;
+            case Resource.KW_OTHER:
+                found = tasks.findDueCustomized();
+                break;
+            default:
+                if (query.isEmpty()) {
+                    throw new MeggyNoArgException();
+                }
+                throw new MeggyException(Resource.fmtErrUnknownCmd(query));
+            }
+        } catch (MeggyException e) {
+            notifMsgSender.accept(Resource.NOTIF_USAGE + Resource.USAGE_DUE);
+            throw e;
+        }
+        sink.accept(query.equalsIgnoreCase(Resource.KW_OTHER) ? Resource.NOTIF_DUE_OTHER : Resource.NOTIF_DUE);
+        TaskList.render(found, 0, sink);
+    }
+
+    /**
+     * Lists events that overlap a time range, including completed ones.
+     *
+     * @param args Non-null. Start and end times after their keywords.
+     * @param sink Non-null. Accepts the printable string of the listed events in chunks.
+     * @throws MeggyException If a time is missing or can't be parsed, or the range ends before it starts.
+     */
+    private void agenda(String args, Consumer<String> sink) throws MeggyException {
+        assert args != null;
+        final List<EventTask> found;
+        try {
+            final String fromKw = EventTask.START_KEYWORD_FORMATTED.trim();
+            final int toIdx = args.indexOf(EventTask.END_KEYWORD_FORMATTED);
+            if (!args.startsWith(fromKw) || toIdx < 0) {
+                throw new MeggyNoArgException();
             }
+            final LocalDateTime from = Parser.parseTime(args.substring(fromKw.length(), toIdx).trim());
+            final String toTime = args.substring(toIdx + EventTask.END_KEYWORD_FORMATTED.length()).trim();
+            final LocalDateTime to = Parser.parseTime(toTime);
+            if (from.isAfter(to)) {
+                throw new MeggyException(Resource.ERR_TIME_RANGE);
+            }
+            found = tasks.findEvents(from, to);
+        } catch (MeggyException e) {
+            notifMsgSender.accept(Resource.NOTIF_USAGE + Resource.USAGE_AGENDA);
+            throw e;
         }
-        return Resource.NOTIF_FIND + ans;
+        sink.accept(Resource.NOTIF_AGENDA);
+        TaskList.render(found, 0, sink);
+    }
+
+    /** Runs a streaming job and collects its output into one string. */
+    private static String collect(StreamJob job, String args) throws MeggyException {
+        final StringBuilder ans = new StringBuilder();
+        job.apply(args, ans::append);
+        return ans.toString();
+    }
+
+    /**
+     * Parses task creation line into task without changing task list. Thread-safe.
+     *
+     * @param line Non-null. Raw input line.
+     * @return Parsed task, or {@code null} if the line is not a task creation command.
+     * @throws MeggyException If syntax error occurred during parsing task.
+     */
+    private static UserTask parseTask(String line) throws MeggyException {
+        assert line != null;
+        final Parser.JobAndArg<UserTask> jobAndArg = Parser.parseJobAndArg(Util.TASK_CMD_TO_NEW, line);
+        return jobAndArg.job == null ? null : jobAndArg.job.apply(jobAndArg.args);
     }
 
     /**
-     * Parses and executes user's input line. Changes task list accordingly.
+     * Parses and executes user's input line. Changes task list accordingly. Thread-safe: commands that only read task
+     * list run in parallel, while the others run one at a time.
      *
      * @param line Non-null. User's raw input line.
      * @return Complete response of this chatbot. Either the response of a valid query or error message.
@@ -166,9 +533,69 @@ public class Meggy {
      */
     public String parseAndGetResponse(String line) throws MeggyException {
         assert line != null;
-        final Parser.JobAndArg<String> jobAndArg = Parser.parseJobAndArg(cmdToJob, line);
-        final Function<String, String> job = jobAndArg.job == null ? NOTIFY_UNKNOWN_CMD : jobAndArg.job;
-        return job.apply(jobAndArg.args);
+        return getResponse(Parser.parseJobAndArg(cmdToJob, line));
+    }
+
+    /**
+     * Executes a command already parsed, like {@code parseAndGetResponse}, so that a caller that inspects the command
+     * first need not parse the line twice.
+     *
+     * @param jobAndArg Non-null. Parsed by {@code Parser.parseJobAndArg} with {@code cmdToJob}.
+     * @return Complete response of this chatbot. Either the response of a valid query or error message.
+     * @throws MeggyException If syntax error occurred during parsing.
+     */
+    public String getResponse(Parser.JobAndArg<String> jobAndArg) throws MeggyException {
+        assert jobAndArg != null && (jobAndArg.job == null || jobAndArg.job == cmdToJob.get(jobAndArg.cmd));
+        if (jobAndArg.job == null) {
+            return NOTIFY_UNKNOWN_CMD.apply(jobAndArg.args);
+        }
+        if (jobAndArg.cmd.equals(Resource.CMD_EXIT)) {
+            return jobAndArg.job.apply(jobAndArg.args); // Takes lock by itself to save.
+        }
+        final Lock jobLock = readCmds.contains(jobAndArg.cmd) ? lock.readLock() : lock.writeLock();
+        jobLock.lock();
+        try {
+            return jobAndArg.job.apply(jobAndArg.args);
+        } finally {
+            jobLock.unlock();
+        }
+    }
+
+    /**
+     * Parses and executes user's input line like {@code parseAndGetResponse}, but passes the response to a sink in
+     * chunks. Long responses of 'list' and 'find' are never held in memory as a whole; the others come in one chunk.
+     * The read lock is held while streaming, so a slow sink delays changes to task list.
+     *
+     * @param line Non-null. User's raw input line.
+     * @param sink Non-null. Accepts the response in chunks, in order.
+     * @throws MeggyException If syntax error occurred during parsing. Nothing is passed to sink in that case.
+     */
+    public void parseAndStreamResponse(String line, Consumer<String> sink) throws MeggyException {
+        assert line != null;
+        streamResponse(Parser.parseJobAndArg(cmdToJob, line), sink);
+    }
+
+    /**
+     * Executes a command already parsed, like {@code parseAndStreamResponse}.
+     *
+     * @param jobAndArg Non-null. Parsed by {@code Parser.parseJobAndArg} with {@code cmdToJob}.
+     * @param sink      Non-null. Accepts the response in chunks, in order.
+     * @throws MeggyException If syntax error occurred during parsing. Nothing is passed to sink in that case.
+     */
+    public void streamResponse(Parser.JobAndArg<String> jobAndArg, Consumer<String> sink) throws MeggyException {
+        assert jobAndArg != null;
+        assert sink != null;
+        final StreamJob streamJob = cmdToStreamJob.get(jobAndArg.cmd);
+        if (jobAndArg.job == null || streamJob == null) {
+            sink.accept(getResponse(jobAndArg));
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            streamJob.apply(jobAndArg.args, sink);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -181,13 +608,47 @@ public class Meggy {
         this.notifMsgSender = notifMsgSender;
         notifMsgSender.accept(Resource.GREETINGS);
 
-        fileWrite = false;
+        lock.writeLock().lock();
         try {
-            storage.load(this::parseAndGetResponse);
+            fileWrite = false;
+            if (storage.dataFile.length() < Util.PARALLEL_LOAD_MIN_SIZE) {
+                storage.load(this::parseAndGetResponse, this::addLoadedTask);
+            } else {
+                storage.loadParallel(this::parseAndGetResponse, this::addLoadedTask, Meggy::parseTask);
+            }
         } catch (MeggyException e) {
             notifMsgSender.accept(e.getMessage());
+        } finally {
+            fileWrite = true;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Exports task list in human-readable text format, regardless of the format of storage file.
+     *
+     * @param file Non-null. The file to export to. Overwritten if exists.
+     * @throws MeggyException If file IO fails.
+     */
+    public void exportText(File file) throws MeggyException {
+        assert file != null;
+        lock.readLock().lock();
+        try {
+            Storage.exportText(tasks, file);
+        } finally {
+            lock.readLock().unlock();
         }
-        fileWrite = true;
+    }
+
+    /** Job of a command whose response is passed to a sink in chunks. */
+    @FunctionalInterface
+    private interface StreamJob {
+        /**
+         * @param args Non-null. Unparsed string arguments.
+         * @param sink Non-null. Accepts the response in chunks, in order.
+         * @throws MeggyException If syntax error occurred. Nothing is passed to sink in that case.
+         */
+        void apply(String args, Consumer<String> sink) throws MeggyException;
     }
 
     /** Two chatbots are equal if they have equal task list. */
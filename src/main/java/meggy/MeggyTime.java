@@ -12,8 +12,15 @@ public class MeggyTime {
     public static final MeggyTime NA = new MeggyTime();
     /** The date-time format to be pass to output. */
     public static final DateTimeFormatter OUT_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    /**
+     * Parsed times by trimmed input string. Task data repeats the same time strings a lot, so caching saves both
+     * parsing and heap, as equal times share one instance.
+     */
+    public static final LruCache<String, MeggyTime> CACHE = new LruCache<>(Util.TIME_CACHE_SIZE);
     /** All acceptable date-time formats. Singapore's convention (date-month) is prioritized. */
     private static final DateTimeFormatter[] FORMATTERS;
+    /** {@code FORMATTERS} in the same order, each with the shape of input it can parse. */
+    private static final Format[] FORMATS;
 
     static { //initialize date-time formats
         final String[] timeSeps = {":", ""};
@@ -24,6 +31,7 @@ public class MeggyTime {
         Arrays.setAll(datePartLong, i -> dateFmts[i].replace("d", "dd")
                 .replace("M", "MM").replace("y", "yyyy"));
         FORMATTERS = new DateTimeFormatter[timeSeps.length * dateSeps.length * dateFmts.length * 2];
+        FORMATS = new Format[FORMATTERS.length];
         int i = 0;
         for (int j = 0; j < dateFmts.length; j++) {
             final String dateFmt = dateFmts[j];
@@ -32,8 +40,13 @@ public class MeggyTime {
                         : dateFmt.charAt(0) + dateSep + dateFmt.charAt(1) + dateSep + dateFmt.charAt(2);
                 for (String timeSep : timeSeps) {
                     final String timePart = "HH" + timeSep + "mm";
-                    FORMATTERS[i++] = DateTimeFormatter.ofPattern(datePart + ' ' + timePart);
-                    FORMATTERS[i++] = DateTimeFormatter.ofPattern(timePart + ' ' + dateFmt);
+                    final boolean hasTimeSep = !timeSep.isEmpty();
+                    FORMATTERS[i] = DateTimeFormatter.ofPattern(datePart + ' ' + timePart);
+                    FORMATS[i] = new Format(FORMATTERS[i], true, dateSep, hasTimeSep, dateFmt);
+                    i++;
+                    FORMATTERS[i] = DateTimeFormatter.ofPattern(timePart + ' ' + dateFmt);
+                    FORMATS[i] = new Format(FORMATTERS[i], false, "", hasTimeSep, dateFmt);
+                    i++;
                 }
             }
         }
@@ -43,6 +56,8 @@ public class MeggyTime {
     final LocalDateTime formatted;
     /** Unparsable user-customized time or null if can be parsed. */
     final String customized;
+    /** Cached string representation, or null if not formatted yet. */
+    private String rendered = null;
 
     /** Constructr of the dummy {@code NA} value */
     private MeggyTime() {
@@ -57,25 +72,98 @@ public class MeggyTime {
         customized = formatted == null ? time : null;
     }
 
+    /**
+     * @param formatted  Parsed time or null if time is user-customized.
+     * @param customized Unparsable user-customized time or null if can be parsed.
+     */
+    private MeggyTime(LocalDateTime formatted, String customized) {
+        assert formatted == null ^ customized == null;
+        this.formatted = formatted;
+        this.customized = customized;
+    }
+
+    /**
+     * Factory method of already parsed time.
+     *
+     * @param time Non-null. The parsed time.
+     */
+    public static MeggyTime of(LocalDateTime time) {
+        assert time != null;
+        return new MeggyTime(time, null);
+    }
+
+    /**
+     * Factory method of time known to be user-customized. The string is not parsed.
+     *
+     * @param time Non-null. The trimmed time string that can't be parsed.
+     */
+    public static MeggyTime ofCustomized(String time) {
+        assert time != null;
+        final MeggyTime cached = CACHE.get(time);
+        return cached != null && time.equals(cached.customized) ? cached : new MeggyTime(null, time);
+    }
+
     /**
      * Factory method. Trims string if non-null. It also accepts {@code null} value, in which case it returns the cached
-     * {@code NA} value.
+     * {@code NA} value. Parsed times are shared through {@code CACHE}.
      *
      * @param time Untrimmed time value to be interpreted or {@code null} if {@code NA} value is intended.
      */
     public static MeggyTime of(String time) {
-        final MeggyTime ans = time == null ? NA : new MeggyTime(time.trim());
+        final MeggyTime ans = time == null ? NA : CACHE.computeIfAbsent(time.trim(), MeggyTime::new);
         assert ans != null && (ans.customized == null ^ ans.formatted == null);
         return ans;
     }
 
     /**
-     * Attaempts to parse date-time from string.
+     * Attempts to parse date-time from string. The input is scanned once to rule out the formats it can't possibly
+     * match, so only the remaining formats, usually just one, are tried in precedence order. Always gives the same
+     * result as {@code parseDateTimeByTrial}.
      *
      * @param dateTime Non-null. The raw string to attempt to parsed.
      * @return parsed date-time or {@code null} if no formatter can parse correctly.
      */
     public static LocalDateTime parseDateTime(String dateTime) {
+        assert dateTime != null;
+        // All formats consist of digits, signs, and separators, with exactly one space between date and time.
+        int spaceIdx = -1;
+        final int len = dateTime.length();
+        for (int i = 0; i < len; i++) {
+            final char c = dateTime.charAt(i);
+            if (c == ' ') {
+                if (spaceIdx >= 0) {
+                    return null;
+                }
+                spaceIdx = i;
+            } else if (!isDigit(c) && c != '/' && c != '-' && c != ':' && c != '+') {
+                return null;
+            }
+        }
+        if (spaceIdx < 0) {
+            return null;
+        }
+        final String left = dateTime.substring(0, spaceIdx);
+        final String right = dateTime.substring(spaceIdx + 1);
+        for (Format format : FORMATS) {
+            if (!format.mayParse(left, right)) {
+                continue;
+            }
+            try {
+                return LocalDateTime.parse(dateTime, format.formatter);
+            } catch (DateTimeException ignored) {
+            } // Try next formatter if unsuccessful
+        }
+        return null;
+    }
+
+    /**
+     * Attempts to parse date-time from string by trying every formatter in precedence order. Slow, as every failed
+     * attempt throws an exception. Kept as the reference of {@code parseDateTime}.
+     *
+     * @param dateTime Non-null. The raw string to attempt to parsed.
+     * @return parsed date-time or {@code null} if no formatter can parse correctly.
+     */
+    public static LocalDateTime parseDateTimeByTrial(String dateTime) {
         assert dateTime != null;
         for (DateTimeFormatter format : FORMATTERS) {
             try {
@@ -86,6 +174,11 @@ public class MeggyTime {
         return null;
     }
 
+    /** @return Whether the character is an ASCII digit. */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
     /**
      * Two {@link MeggyTime} objects are equal iff they have same (equal or both null) formatted time and customized
      * time.
@@ -99,8 +192,145 @@ public class MeggyTime {
         return Objects.equals(formatted, other.formatted) && Objects.equals(customized, other.customized);
     }
 
-    /** @return User-customized time string in square brackets or formatted date-time. */
+    /** Hash code consistent with {@code equals}. */
+    @Override
+    public int hashCode() {
+        return Objects.hash(formatted, customized);
+    }
+
+    /** @return User-customized time string in square brackets or formatted date-time. Formatted once and cached. */
     public String toString() {
-        return formatted == null ? '[' + customized + ']' : formatted.format(OUT_FMT);
+        // Strings are immutable, so racing readers at worst format twice.
+        String ans = rendered;
+        if (ans == null) {
+            ans = formatted == null ? '[' + customized + ']' : formatted.format(OUT_FMT);
+            rendered = ans;
+        }
+        return ans;
+    }
+
+    /**
+     * A date-time formatter and the shape of input it can parse. The shape is checked conservatively: if the check
+     * fails, the formatter surely can't parse the input, but not the other way round.
+     */
+    private static class Format {
+        final DateTimeFormatter formatter;
+        /** Whether date comes before time. */
+        private final boolean isDateFirst;
+        /** The separator between date fields, or 0 if date fields are adjacent. */
+        private final char dateSep;
+        /** Whether hour and minute are separated by colon. */
+        private final boolean hasTimeSep;
+        /** Order of date fields. Permutation of "dMy". */
+        private final String dateFmt;
+        /** Whether date fields are adjacent and fixed-width (except for year). */
+        private final boolean isLongDate;
+
+        /**
+         * @param formatter   Non-null. The formatter.
+         * @param isDateFirst Whether date comes before time.
+         * @param dateSep     The separator between date fields, or {@code null} if the date is fixed-width, or empty
+         *                    if the date is variable-width without separator.
+         * @param hasTimeSep  Whether hour and minute are separated by colon.
+         * @param dateFmt     Non-null. Order of date fields. Permutation of "dMy".
+         */
+        Format(DateTimeFormatter formatter, boolean isDateFirst, String dateSep, boolean hasTimeSep, String dateFmt) {
+            this.formatter = formatter;
+            this.isDateFirst = isDateFirst;
+            this.dateSep = dateSep == null || dateSep.isEmpty() ? 0 : dateSep.charAt(0);
+            this.hasTimeSep = hasTimeSep;
+            this.dateFmt = dateFmt;
+            isLongDate = dateSep == null;
+        }
+
+        /**
+         * @param left  Non-null. Input before the space.
+         * @param right Non-null. Input after the space.
+         * @return Whether the formatter may be able to parse the input.
+         */
+        boolean mayParse(String left, String right) {
+            return isDateFirst ? mayBeTime(right) && mayBeDate(left) : mayBeTime(left) && mayBeDate(right);
+        }
+
+        /** Hour and minute are always 2 digits. */
+        private boolean mayBeTime(String s) {
+            if (hasTimeSep) {
+                return s.length() == 5 && isDigit(s.charAt(0)) && isDigit(s.charAt(1)) && s.charAt(2) == ':'
+                        && isDigit(s.charAt(3)) && isDigit(s.charAt(4));
+            }
+            return s.length() == 4 && isDigits(s, 0, 4);
+        }
+
+        private boolean mayBeDate(String s) {
+            if (s.indexOf(':') >= 0) {
+                return false;
+            }
+            final int len = s.length();
+            if (dateSep == 0) {
+                if (s.indexOf('/') >= 0) {
+                    return false;
+                }
+                if (!isLongDate || !isDigits(s, 0, len)) {
+                    return true;
+                }
+                // Day and month are 2 digits. Year takes the rest, at least 4 digits.
+                if (len < 8) {
+                    return false;
+                }
+                int from = 0;
+                for (int i = 0; i < 3; i++) {
+                    final char field = dateFmt.charAt(i);
+                    final int to = from + (field == 'y' ? len - 4 : 2);
+                    if (!mayBeField(field, s, from, to)) {
+                        return false;
+                    }
+                    from = to;
+                }
+                return true;
+            }
+            final int sep1 = s.indexOf(dateSep);
+            final int sep2 = sep1 < 0 ? -1 : s.indexOf(dateSep, sep1 + 1);
+            if (sep2 < 0) {
+                return false;
+            }
+            if (s.indexOf(dateSep, sep2 + 1) >= 0) {
+                return dateSep == '-'; // An extra '-' may be a sign.
+            }
+            return mayBeField(dateFmt.charAt(0), s, 0, sep1) && mayBeField(dateFmt.charAt(1), s, sep1 + 1, sep2)
+                    && mayBeField(dateFmt.charAt(2), s, sep2 + 1, len);
+        }
+
+        /**
+         * Checks range of day and month fields.
+         *
+         * @param field One of 'd', 'M', and 'y'.
+         * @return False if the substring from {@code from} (inclusive) to {@code to} (exclusive) is surely not a valid
+         *         value of the field.
+         */
+        private static boolean mayBeField(char field, String s, int from, int to) {
+            if (from >= to) {
+                return false;
+            }
+            if (field == 'y' || !isDigits(s, from, to)) {
+                return true;
+            }
+            while (from < to && s.charAt(from) == '0') {
+                from++;
+            }
+            if (to - from > 2) {
+                return false;
+            }
+            final int value = from == to ? 0 : Integer.parseInt(s, from, to, 10);
+            return value >= 1 && value <= (field == 'd' ? 31 : 12);
+        }
+
+        private static boolean isDigits(String s, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (!isDigit(s.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
@@ -1,5 +1,9 @@
 package meggy;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 
 import meggy.exception.Function;
@@ -36,28 +40,208 @@ public class Parser {
         return idx;
     }
 
+    /**
+     * Parses a positive count from the first arg in args string.
+     *
+     * @param args Non-null. Trimmed arguments string.
+     * @return Parsed count.
+     * @throws MeggyNoArgException If args string is empty.
+     * @throws MeggyException      If args string's first word is not a positive 32-bit {@link Integer}.
+     */
+    public static int parseCount(String args) throws MeggyException {
+        assert args != null;
+        final String arg = get1stArg(args);
+        if (arg.isEmpty()) {
+            throw new MeggyNoArgException();
+        }
+        final int count;
+        try {
+            count = Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            throw new MeggyException(Resource.fmtErrCount(arg));
+        }
+        if (count <= 0) {
+            throw new MeggyException(Resource.fmtErrCount(arg));
+        }
+        return count;
+    }
+
+    /**
+     * Parses a date-time in any format {@link MeggyTime} accepts.
+     *
+     * @param time Non-null. Trimmed time string.
+     * @return Parsed date-time.
+     * @throws MeggyNoArgException If time string is empty.
+     * @throws MeggyException      If time string can't be parsed.
+     */
+    public static LocalDateTime parseTime(String time) throws MeggyException {
+        assert time != null;
+        if (time.isEmpty()) {
+            throw new MeggyNoArgException();
+        }
+        final LocalDateTime ans = MeggyTime.parseDateTime(time);
+        if (ans == null) {
+            throw new MeggyException(Resource.fmtErrTime(time));
+        }
+        return ans;
+    }
+
+    /**
+     * Parses comma-separated indices and inclusive ranges of indices, such as "3-900,1200". Spaces are only allowed
+     * around commas. Without commas, only the first arg in args string is parsed, the same as {@code parseIdx}.
+     *
+     * @param args Non-null. Trimmed arguments string.
+     * @return Parsed ranges (indices start with 0) in input order. Ranges may overlap.
+     * @throws MeggyNoArgException If args string is empty.
+     * @throws MeggyNfException    If an index is not a signed 32-bit {@link Integer}, or a range ends before it starts.
+     */
+    public static List<IdxRange> parseIdxRanges(String args) throws MeggyException {
+        assert args != null;
+        final String spec = args.indexOf(',') < 0 ? get1stArg(args) : args.replace(" ", "");
+        if (spec.isEmpty()) {
+            throw new MeggyNoArgException();
+        }
+        final ArrayList<IdxRange> ans = new ArrayList<>();
+        for (String item : spec.split(",", -1)) {
+            final int dashIdx = item.indexOf('-', 1); // A leading dash is a sign.
+            try {
+                if (dashIdx < 0) {
+                    final int idx = Integer.parseInt(item) - 1;
+                    ans.add(new IdxRange(idx, idx));
+                    continue;
+                }
+                final int from = Integer.parseInt(item.substring(0, dashIdx)) - 1;
+                final int to = Integer.parseInt(item.substring(dashIdx + 1)) - 1;
+                if (from > to) {
+                    throw new MeggyNfException(item);
+                }
+                ans.add(new IdxRange(from, to));
+            } catch (NumberFormatException e) {
+                throw new MeggyNfException(item);
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Formats the command line that applies an index command to the task at index.
+     *
+     * @param cmd Non-null. Index command (delete/mark/unmark only).
+     * @param idx Index (starts with 0) of task.
+     * @return The command line that {@code parseIdx} can parse back to {@code idx}.
+     */
+    public static String fmtIdxCmd(String cmd, int idx) {
+        assert cmd != null;
+        return cmd + ' ' + (idx + 1);
+    }
+
+    /**
+     * Formats the command line that applies an index command to all tasks at indices. Adjacent indices are merged into
+     * ranges.
+     *
+     * @param cmd  Non-null. Index command (delete/mark/unmark only).
+     * @param idxs Non-null and non-empty. Indices (start with 0) of tasks.
+     * @return The command line that {@code parseIdxRanges} can parse back to {@code idxs}.
+     */
+    public static String fmtIdxsCmd(String cmd, BitSet idxs) {
+        assert cmd != null;
+        assert idxs != null && !idxs.isEmpty();
+        final StringBuilder ans = new StringBuilder(cmd).append(' ');
+        int from = idxs.nextSetBit(0);
+        while (from >= 0) {
+            final int to = idxs.nextClearBit(from);
+            ans.append(from + 1);
+            if (to - from > 1) {
+                ans.append('-').append(to);
+            }
+            ans.append(',');
+            from = idxs.nextSetBit(to);
+        }
+        ans.setLength(ans.length() - 1);
+        return ans.toString();
+    }
+
     /**
      * Parses text line into command, arguments, and finds job according to job table. All continuous whitespaces are
      * replaced with a single whitespace.
+     * <p>
+     * Single pass over the line without regular expressions. Command is lower-cased and looked up in job table, and
+     * args string is a plain substring of line unless whitespace in it needs collapsing.
      *
      * @param <E>      The return type of job functions in job table.
-     * @param jobTable Non-null. The mapping from command name to command job function.
+     * @param jobTable Non-null. The mapping from lower-case command name to command job function.
      * @param line     Non-null. Unprocessed User's input line.
      * @return Parsed command, job, and argument encapsulated in an {@code JobAndArg} object.
      */
     public static <E> JobAndArg<E> parseJobAndArg(Map<String, Function<String, E>> jobTable, String line) {
         assert jobTable != null;
         assert line != null;
-        //Multiple whitespace characters are treated as 1 whitespace.
-        line = line.replaceAll("[ \t\r\n\f]+", " ").trim();
-        //Parse command and args
-        final int spaceIdx = line.indexOf(' ');
-        final boolean noSpace = spaceIdx < 0;
-        final String cmd = (noSpace ? line : line.substring(0, spaceIdx)).toLowerCase();
+        // Trimmed the same as String.trim, which also drops other control characters at both ends.
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int cmdStart = 0;
+        while (cmdStart < end && line.charAt(cmdStart) <= ' ') {
+            cmdStart++;
+        }
+        int cmdEnd = cmdStart;
+        while (cmdEnd < end && !isWhitespace(line.charAt(cmdEnd))) {
+            cmdEnd++;
+        }
+        // Lower-cased exactly like before, which returns the same string if already in lower case.
+        final String cmd = line.substring(cmdStart, cmdEnd).toLowerCase();
         final Function<String, E> job = jobTable.get(cmd);
-        //No corresponding job? args is line. Otherwise, args is everything after first space. No space? Empty args.
-        final String args = job == null ? line : noSpace ? "" : line.substring(spaceIdx + 1).trim();
-        return new JobAndArg<>(cmd, job, args);
+        //No corresponding job? args is line. Otherwise, args is everything after command. No more? Empty args.
+        return new JobAndArg<>(cmd, job, collapseWhitespace(line, job == null ? cmdStart : cmdEnd, end));
+    }
+
+    /**
+     * Trims the start of a substring of line and replaces each run of whitespace characters in it with a single
+     * whitespace.
+     *
+     * @param line Non-null. Unprocessed User's input line.
+     * @param from Start index of substring.
+     * @param end  End index of substring, which must not end with whitespace.
+     * @return Processed substring, without copying characters twice if it is already processed.
+     */
+    private static String collapseWhitespace(String line, int from, int end) {
+        int start = from;
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        boolean isAfterSpace = false;
+        int i = start;
+        for (; i < end; i++) {
+            final char c = line.charAt(i);
+            if (!isWhitespace(c)) {
+                isAfterSpace = false;
+            } else if (c == ' ' && !isAfterSpace) {
+                isAfterSpace = true;
+            } else {
+                break;
+            }
+        }
+        if (i == end) {
+            return line.substring(start, end);
+        }
+        final StringBuilder ans = new StringBuilder(end - start).append(line, start, i);
+        for (; i < end; i++) {
+            final char c = line.charAt(i);
+            if (!isWhitespace(c)) {
+                ans.append(c);
+                isAfterSpace = false;
+            } else if (!isAfterSpace) {
+                ans.append(' ');
+                isAfterSpace = true;
+            }
+        }
+        return ans.toString();
+    }
+
+    /** @return Whether character is a whitespace character collapsed in user input. */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
     }
 
     /**
@@ -72,6 +256,18 @@ public class Parser {
         return whiteSpaceIdx < 0 ? args : args.substring(0, whiteSpaceIdx);
     }
 
+    /** Inclusive range of indices (start with 0). */
+    public static class IdxRange {
+        public final int from;
+        public final int to;
+
+        private IdxRange(int from, int to) {
+            assert from <= to;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
     /**
      * Entry class that stores parsed value of command string, the corresponding job function, and args string.
      *
@@ -12,8 +12,18 @@ public final class Resource {
     public static final String ERR_IO = "An IO error occurred.\n";
     /** Error message if an {@link SecurityException} prevents file interaction. */
     public static final String ERR_NO_FILE_ACCESS = "File access denied by system.\n";
+    /** Error message if a time range ends before it starts. */
+    public static final String ERR_TIME_RANGE = "That time range ends before it starts.\n";
     /** Error message if a task to be inserted already have an equivalent existing in task list. */
     public static final String ERR_DUPE_TASK = "Task already exist in list:\n";
+    /** Error message if a command line or request sent over network exceeds the length limit. */
+    public static final String ERR_TOO_LONG = "That's too long for me to read.\n";
+    /** Error message if a request sent over network carries no command. */
+    public static final String ERR_NO_CMD = "You sent me nothing to do.\n";
+    /** Error message if a request sent over network is turned away under load. */
+    public static final String ERR_SERVER_BUSY = "Too many of you talking at once! Try again in a sec.\n";
+    /** Error message if a user name sent to multi-user server is invalid. */
+    public static final String ERR_USER_NAME = "Who are you? User names are 1 to 64 letters, digits, '-' or '_'.\n";
     /** Indentation before task string when displaying in list. */
     public static final String TASK_STRING_INDENT = "    ";
     /** 'Exit' command. */
@@ -34,6 +44,24 @@ public final class Resource {
     public static final String CMD_DEL = "delete";
     /** 'Find' command. */
     public static final String CMD_FIND = "find";
+    /** 'Due' command. */
+    public static final String CMD_DUE = "due";
+    /** 'Before' query of 'due' command. */
+    public static final String KW_BEFORE = "before";
+    /** 'After' query of 'due' command. */
+    public static final String KW_AFTER = "after";
+    /** 'Between' query of 'due' command. */
+    public static final String KW_BETWEEN = "between";
+    /** 'And' keyword of 'due between' query. */
+    public static final String KW_AND = "and";
+    /** 'Overdue' query of 'due' command. */
+    public static final String KW_OVERDUE = "overdue";
+    /** 'Other' query of 'due' command, for user-customized times. */
+    public static final String KW_OTHER = "other";
+    /** 'Agenda' command. */
+    public static final String CMD_AGENDA = "agenda";
+    /** 'Limit' keyword of 'find' command. */
+    public static final String KW_LIMIT = "--limit";
     /** 'Due time' keyword of 'deadline' command. */
     public static final String KW_DUE = "by";
     /** 'Start time' keyword of 'event' command. */
@@ -48,14 +76,51 @@ public final class Resource {
     public static final String NOTIF_MARK = "Booyah! Marked this task as done:\n";
     /** Notification message after 'unmark' command. */
     public static final String NOTIF_UNMK = "OK. Marked this task as not done:\n";
+    /** Notification message after 'mark' command on multiple tasks. */
+    public static final String NOTIF_MARK_BATCH = "Booyah! Marked these tasks as done:\n";
+    /** Notification message after 'unmark' command on multiple tasks. */
+    public static final String NOTIF_UNMK_BATCH = "OK. Marked these tasks as not done:\n";
     /** Notification message after syntax error. */
     public static final String NOTIF_USAGE = "Correct usage: ";
+    /** Correct syntax of 'list' command. */
+    public static final String USAGE_LIST = "list [<start idx: integer between 1 and list size (inclusive)>"
+            + " [<count: positive integer>]]\n";
+    /** Correct syntax of 'find' command. */
+    public static final String USAGE_FIND = "find <keyword> [--limit <count: positive integer>]\n";
+    /** Correct syntax of 'due' command. */
+    public static final String USAGE_DUE = "due before <time>\n    or due after <time>\n"
+            + "    or due between <time> /and <time>\n    or due overdue\n    or due other\n";
+    /** Correct syntax of 'agenda' command. */
+    public static final String USAGE_AGENDA = "agenda /from <time> /to <time>\n";
     /** Notification message after 'delete' command. */
     public static final String NOTIF_DEL = "OK. Removed this task:\n";
+    /** Notification message after 'delete' command on multiple tasks. */
+    public static final String NOTIF_DEL_BATCH = "OK. Removed these tasks:\n";
     /** Notification message after 'find' command. */
     public static final String NOTIF_FIND = "Here are the matching tasks in your list:\n";
+    /** Notification message after 'due' command. */
+    public static final String NOTIF_DUE = "Here are the unfinished tasks due then, earliest first:\n";
+    /** Notification message after 'due other' command. */
+    public static final String NOTIF_DUE_OTHER = "Here are the unfinished tasks due at times I can't read:\n";
+    /** Notification message after 'agenda' command. */
+    public static final String NOTIF_AGENDA = "Here are the events in that time, earliest first:\n";
+    /** Notification message after adding an event that clashes with others. */
+    public static final String NOTIF_CONFLICT = "Heads up! It clashes with:\n";
     /** Notification message after 'bye' command. */
     public static final String FAREWELL = "OK gotta go play more Turf Wars. Have a fresh day!\n";
+    /** Correct syntax of command line arguments of the launcher. */
+    public static final String USAGE_LAUNCHER = "Usage: meggy [--server [<port>]] [--http [<port>]]"
+            + " [--host <address>] [--tenants <directory>]\n"
+            + "    or meggy --batch [<script>] [--quiet] [--summary]\n"
+            + "  With no arguments, opens the chat window.\n"
+            + "  --batch   Runs commands in the script, or standard input if none, one per line. Saves at the end.\n"
+            + "  --quiet   Does not print responses of batch commands.\n"
+            + "  --summary Prints number of batch commands and time spent at the end.\n"
+            + "  --server  Serves commands over TCP, one per line. Each reply ends with an empty line.\n"
+            + "  --http    Serves commands in bodies of HTTP POST requests.\n"
+            + "  --host    Address to listen on. Defaults to loopback.\n"
+            + "  --tenants Serves many users, each with a data file in the directory. Over TCP, the first line names\n"
+            + "            the user. Over HTTP, the path does, and GET /metrics shows statistics.\n";
     /** Icon for tasks marked 'done'. */
     public static final char DONE_MK = 'X';
     /** Front page greetings. */
@@ -83,6 +148,46 @@ public final class Resource {
         return "Now you have " + nTask + " task" + (nTask > 1 ? "s" : "") + " in the list.\n";
     }
 
+    /**
+     * Formats the notification message before a page of task list.
+     *
+     * @param from     Index (starts with 0) of first task in page.
+     * @param to       Index (starts with 0) after last task in page.
+     * @param listSize Size of whole list.
+     * @return Message about the page range.
+     */
+    public static String fmtListPage(int from, int to, int listSize) {
+        return "Here are tasks " + (from + 1) + " to " + to + " of the " + listSize + " in your list:\n";
+    }
+
+    /**
+     * Formats the notification message after a headless server starts.
+     *
+     * @param protocol Non-null. Protocol of the server.
+     * @param host     Non-null. Address the server listens on.
+     * @param port     Port the server listens on.
+     * @return Message about the server address.
+     */
+    public static String fmtNotifServing(String protocol, String host, int port) {
+        assert protocol != null;
+        assert host != null;
+        return "Serving " + protocol + " on " + host + ':' + port + ".\n";
+    }
+
+    /**
+     * Formats the summary after a batch of commands.
+     *
+     * @param nCmds     Number of commands run.
+     * @param nErrors   Number of commands that failed.
+     * @param runNanos  Nanoseconds spent running commands.
+     * @param saveNanos Nanoseconds spent saving changes.
+     * @return Message about the counts and time spent.
+     */
+    public static String fmtBatchSummary(long nCmds, long nErrors, long runNanos, long saveNanos) {
+        return String.format("Ran %d command%s (%d failed) in %.3f s, %.0f per second. Saved in %.3f s.\n", nCmds,
+                nCmds == 1 ? "" : "s", nErrors, runNanos / 1e9, nCmds * 1e9 / Math.max(1, runNanos), saveNanos / 1e9);
+    }
+
     /**
      * Formats the message of error caused by {@link NumberFormatException}
      *
@@ -94,6 +199,28 @@ public final class Resource {
         return "Can't interpret \"" + arg + "\" as an index number.\n";
     }
 
+    /**
+     * Formats the message of error caused by a count that is not a positive number.
+     *
+     * @param arg Non-null. String in question.
+     * @return Error message.
+     */
+    public static String fmtErrCount(String arg) {
+        assert arg != null;
+        return "Can't take \"" + arg + "\" as a count. Give me a whole number from 1 up.\n";
+    }
+
+    /**
+     * Formats the message of error caused by unparsable date-time.
+     *
+     * @param arg Non-null. String in question.
+     * @return Error message.
+     */
+    public static String fmtErrTime(String arg) {
+        assert arg != null;
+        return "Can't interpret \"" + arg + "\" as a date and time.\n";
+    }
+
     /**
      * Formats the notification message after empty input or unknown command or empty input.
      *
@@ -106,6 +233,16 @@ public final class Resource {
                 + cmd + "\" means.\n";
     }
 
+    /**
+     * Formats the message of error caused by data file of unsupported format version.
+     *
+     * @param version The version in file.
+     * @return Error message.
+     */
+    public static String fmtErrFileVersion(int version) {
+        return "Data file is of version " + version + ", which I can't read. Am I outdated?\n";
+    }
+
     /**
      * Formats the message of error would have caused by {@link IndexOutOfBoundsException}
      *
@@ -0,0 +1,126 @@
+package meggy;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces bursts of changes into few flushes on a background thread. A flush happens either after a fixed interval
+ * since the first unflushed change, or as soon as enough changes are pending, whichever comes first.
+ */
+public class SaveScheduler {
+    /** Runs flushes in the background. */
+    private final ScheduledExecutorService executor;
+    /** Whether {@code executor} is owned by this scheduler and stopped on shutdown. */
+    private final boolean isExecutorOwned;
+    /** Writes all pending changes. Must tolerate being run when nothing is pending. */
+    private final Runnable flushAction;
+    /** Maximum delay in milliseconds from a change until it is flushed. */
+    private final long intervalMillis;
+    /** Number of pending changes that triggers an immediate flush. */
+    private final int maxPending;
+    /** Number of changes since last flush. */
+    private int nPending = 0;
+    /** The delayed flush, or {@code null} if none is scheduled. */
+    private ScheduledFuture<?> scheduled = null;
+    /** Whether an immediate flush is queued on the background thread. */
+    private boolean isQueued = false;
+
+    /**
+     * Creates a scheduler that runs flushes on a background thread of its own.
+     *
+     * @param flushAction    Non-null. Writes all pending changes. Must tolerate being run when nothing is pending.
+     * @param intervalMillis Positive. Maximum delay in milliseconds from a change until it is flushed.
+     * @param maxPending     Positive. Number of pending changes that triggers an immediate flush.
+     */
+    public SaveScheduler(Runnable flushAction, long intervalMillis, int maxPending) {
+        this(flushAction, intervalMillis, maxPending, Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, SaveScheduler.class.getSimpleName());
+            t.setDaemon(true);
+            return t;
+        }), true);
+    }
+
+    /**
+     * Creates a scheduler that runs flushes on a shared executor, so that many schedulers need not have a thread each.
+     *
+     * @param flushAction    Non-null. Writes all pending changes. Must tolerate being run when nothing is pending.
+     * @param intervalMillis Positive. Maximum delay in milliseconds from a change until it is flushed.
+     * @param maxPending     Positive. Number of pending changes that triggers an immediate flush.
+     * @param executor       Non-null. Runs flushes. Not stopped on shutdown.
+     */
+    public SaveScheduler(Runnable flushAction, long intervalMillis, int maxPending, ScheduledExecutorService executor) {
+        this(flushAction, intervalMillis, maxPending, executor, false);
+    }
+
+    private SaveScheduler(Runnable flushAction, long intervalMillis, int maxPending, ScheduledExecutorService executor,
+            boolean isExecutorOwned) {
+        assert flushAction != null;
+        assert intervalMillis > 0;
+        assert maxPending > 0;
+        assert executor != null;
+        this.flushAction = flushAction;
+        this.intervalMillis = intervalMillis;
+        this.maxPending = maxPending;
+        this.executor = executor;
+        this.isExecutorOwned = isExecutorOwned;
+    }
+
+    /** Records one more pending change and schedules a flush accordingly. */
+    public synchronized void onChange() {
+        nPending++;
+        if (isQueued) {
+            return;
+        }
+        if (nPending >= maxPending) {
+            isQueued = true;
+            executor.execute(this::flush);
+        } else if (scheduled == null) {
+            scheduled = executor.schedule(this::flush, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Runs {@code flushAction} on the caller thread and cancels the flush already scheduled. */
+    public void flush() {
+        synchronized (this) {
+            nPending = 0;
+            isQueued = false;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        flushAction.run();
+    }
+
+    /**
+     * Flushes all pending changes and stops the background thread if not shared. A flush already running on the
+     * background thread is waited for rather than interrupted, since an interrupt would close the data file halfway.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        boolean isInterrupted = false;
+        if (isExecutorOwned) {
+            executor.shutdown();
+            while (true) {
+                try {
+                    if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        }
+        flush();
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package meggy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import meggy.exception.MeggyException;
+
+/**
+ * A conversation with a chatbot whose commands run off the caller thread. Commands of one session run one at a time in
+ * submission order, while different sessions of the same chatbot run concurrently.
+ * <p>
+ * A command's future completes before the next command of the session starts, so callbacks attached to futures in
+ * submission order observe results in the same order.
+ */
+public class Session {
+    /** Runs commands of sessions without an executor specified. Virtual threads if supported by runtime. */
+    private static final Executor DEFAULT_EXECUTOR = newDefaultExecutor(Session.class.getSimpleName());
+    /** The chatbot to talk to. */
+    private final Meggy meggy;
+    /** Runs commands. */
+    private final Executor executor;
+    /** Commands submitted but not yet started. */
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    /** Whether a thread is running commands of this session. */
+    private boolean isRunning = false;
+
+    /**
+     * @param meggy    Non-null. The chatbot to talk to.
+     * @param executor Non-null. Runs commands.
+     */
+    public Session(Meggy meggy, Executor executor) {
+        assert meggy != null;
+        assert executor != null;
+        this.meggy = meggy;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a session that runs commands on virtual threads, or on daemon threads if virtual threads are not
+     * supported.
+     *
+     * @param meggy Non-null. The chatbot to talk to.
+     */
+    public Session(Meggy meggy) {
+        this(meggy, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Queues binding the chatbot to a UI, which loads its task list from storage file, so that a large file does not
+     * block the caller. Lines submitted afterwards run once the task list is loaded.
+     *
+     * @param notifMsgSender Non-null. The channel to send extra messages, called on the thread running commands.
+     * @return Future that completes once the task list is loaded.
+     */
+    public CompletableFuture<Void> bindUi(Consumer<String> notifMsgSender) {
+        assert notifMsgSender != null;
+        final CompletableFuture<Void> ans = new CompletableFuture<>();
+        enqueue(() -> {
+            try {
+                meggy.bindUi(notifMsgSender);
+                ans.complete(null);
+            } catch (Throwable e) {
+                ans.completeExceptionally(e);
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * Queues user's input line to be parsed and executed after all previously submitted lines of this session.
+     *
+     * @param line Non-null. User's raw input line.
+     * @return Future of the chatbot response. Completes exceptionally with {@link MeggyException} on syntax error, or
+     *         with whatever else the command throws.
+     */
+    public CompletableFuture<String> submit(String line) {
+        assert line != null;
+        final CompletableFuture<String> ans = new CompletableFuture<>();
+        enqueue(() -> {
+            try {
+                ans.complete(meggy.parseAndGetResponse(line));
+            } catch (Throwable e) {
+                ans.completeExceptionally(e);
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * Queues user's input line like {@code submit(String)}, but passes the response to a sink in chunks as they are
+     * produced.
+     *
+     * @param line Non-null. User's raw input line.
+     * @param sink Non-null. Accepts the response in chunks, in order, on the thread running the command.
+     * @return Future that completes after the last chunk. Completes exceptionally with {@link MeggyException} on syntax
+     *         error, or with whatever else the command or the sink throws.
+     */
+    public CompletableFuture<Void> submit(String line, Consumer<String> sink) {
+        assert line != null;
+        assert sink != null;
+        final CompletableFuture<Void> ans = new CompletableFuture<>();
+        enqueue(() -> {
+            try {
+                meggy.parseAndStreamResponse(line, sink);
+                ans.complete(null);
+            } catch (Throwable e) {
+                ans.completeExceptionally(e);
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * Queues a command. Commands must not throw, or the session would stop running commands queued after them; the
+     * public methods hand every {@link Throwable} to the command's future instead.
+     *
+     * @param cmd Non-null. The command to run.
+     */
+    private synchronized void enqueue(Runnable cmd) {
+        queue.add(cmd);
+        if (!isRunning) {
+            isRunning = true;
+            executor.execute(this::runQueued);
+        }
+    }
+
+    /** Runs queued commands until the queue is empty. */
+    private void runQueued() {
+        while (true) {
+            final Runnable cmd;
+            synchronized (this) {
+                cmd = queue.poll();
+                if (cmd == null) {
+                    isRunning = false;
+                    return;
+                }
+            }
+            cmd.run();
+        }
+    }
+
+    /**
+     * Creates an executor that runs each task on a thread of its own, which is cheap enough to block.
+     *
+     * @param threadName Non-null. Name of threads if they are not virtual.
+     * @return Virtual-thread-per-task executor on Java 21+, or cached pool of daemon threads otherwise.
+     */
+    public static ExecutorService newDefaultExecutor(String threadName) {
+        assert threadName != null;
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                final Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -1,26 +1,144 @@
 package meggy;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import meggy.exception.Consumer;
+import meggy.exception.Function;
 import meggy.exception.MeggyException;
+import meggy.task.UserTask;
 
 
-/** Save cross-session data in file. */
+/**
+ * Save cross-session data in file. The file is either a text list of commands that, when replayed line by line,
+ * recreates the task list, or in {@link BinaryFormat}. The format of an existing file is detected upon loading.
+ */
 public class Storage {
+    /** Encoding of data file. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+    /** Suffix of the temporary file that a new snapshot is written to before it replaces data file. */
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+    /** Approximate size of chunks of text data file to be parsed in parallel. */
+    private static final int PARALLEL_LOAD_CHUNK_SIZE = 1 << 20;
+    /** Buffer size of reading data file. */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    /** Minimum number of records in data file before journal compaction is considered. */
+    private static final long JOURNAL_COMPACT_MIN = 1024;
+    /** Journal is compacted once it has this many times more records than the task list size. */
+    private static final long JOURNAL_COMPACT_FACTOR = 2;
     public final File dataFile;
+    /** Format of snapshots written to data file. */
+    public final Format format;
+    /**
+     * Whether changes are appended to data file as a journal of commands. Otherwise, the entire task list is written on
+     * every change.
+     */
+    private final boolean isJournaled;
+    /** Number of records currently in data file. */
+    private long nRecords = 0;
+    /**
+     * Whether data file content is known to recreate the task list in {@code format}, so that changes can be appended
+     * to it.
+     */
+    private boolean isSynced = false;
+
+    /**
+     * @param dataFile    Non-null. The data file to read from and write to. If not exist, it will be created upon first
+     *                    write operation.
+     * @param isJournaled Whether to append changes to data file instead of rewriting it entirely on every change.
+     * @param format      Non-null. Format of data file to write.
+     */
+    public Storage(File dataFile, boolean isJournaled, Format format) {
+        this.dataFile = dataFile;
+        this.isJournaled = isJournaled;
+        this.format = format;
+        assert dataFile != null;
+        assert format != null;
+    }
+
+    /**
+     * Creates a storage in text format.
+     *
+     * @param dataFile    Non-null. The data file to read from and write to. If not exist, it will be created upon first
+     *                    write operation.
+     * @param isJournaled Whether to append changes to data file instead of rewriting it entirely on every change.
+     */
+    public Storage(File dataFile, boolean isJournaled) {
+        this(dataFile, isJournaled, Format.TEXT);
+    }
 
     /**
+     * Creates a storage in text format that rewrites the entire data file on every change.
+     *
      * @param dataFile Non-null. The data file to read from and write to. If not exist, it will be created upon first
      *                 write operation.
      */
     public Storage(File dataFile) {
-        this.dataFile = dataFile;
-        assert dataFile != null;
+        this(dataFile, false);
+    }
+
+    /**
+     * Persists the changes described by {@code records}. In journal mode, the records are appended to data file unless
+     * the file has grown enough to be compacted, in which case a full snapshot of {@code tasks} is written instead. In
+     * snapshot mode, a full snapshot is always written.
+     * <p>
+     * If appending fails, possibly halfway through a record, the file content is no longer trusted, and the next commit
+     * writes a full snapshot, which replaces the file atomically.
+     *
+     * @param tasks   Non-null. The task list after the changes.
+     * @param records Non-null. The commands that, replayed after the current file content, make the same changes.
+     * @throws MeggyException If file IO throws {@link IOException}.
+     */
+    public void commit(TaskList tasks, List<String> records) throws MeggyException {
+        assert tasks != null;
+        assert records != null;
+        final long nRecordsAfter = nRecords + records.size();
+        final boolean shouldCompact = nRecordsAfter > JOURNAL_COMPACT_FACTOR * tasks.size() + JOURNAL_COMPACT_MIN;
+        if (!isJournaled || shouldCompact || !isSynced || !dataFile.isFile()) {
+            save(tasks);
+            return;
+        }
+        final byte[] data;
+        if (format == Format.TEXT) {
+            final StringBuilder out = new StringBuilder();
+            for (String record : records) {
+                out.append(record).append('\n');
+            }
+            data = out.toString().getBytes(CHARSET);
+        } else {
+            data = encodeBinary(out -> {
+                for (String record : records) {
+                    BinaryFormat.writeCmd(out, record);
+                }
+            });
+        }
+        isSynced = false;
+        write(data, true);
+        nRecords = nRecordsAfter;
+        isSynced = true;
     }
 
     /**
@@ -31,56 +149,350 @@ public class Storage {
      * @throws MeggyException If file IO throws {@link IOException}.
      */
     public void save(TaskList tasks) throws MeggyException {
-        final FileWriter fw;
+        assert tasks != null;
+        isSynced = false;
+        if (format == Format.TEXT) {
+            final String cmds = tasks.recreateCmds();
+            write(cmds.getBytes(CHARSET), false);
+            nRecords = cmds.chars().filter(c -> c == '\n').count();
+        } else {
+            write(encodeBinary(out -> {
+                out.write(BinaryFormat.HEADER);
+                for (UserTask task : tasks) {
+                    BinaryFormat.writeTask(out, task);
+                }
+            }), false);
+            nRecords = tasks.size();
+        }
+        isSynced = true;
+    }
+
+    /**
+     * Writes the content of the entire {@code tasks} list into a file in text format, regardless of {@code format}.
+     *
+     * @param tasks Non-null. The task list to take snapshot.
+     * @param file  Non-null. The file to export to. Overwritten if exists.
+     * @throws MeggyException If file IO throws {@link IOException}.
+     */
+    public static void exportText(TaskList tasks, File file) throws MeggyException {
+        assert tasks != null;
+        assert file != null;
+        new Storage(file, false, Format.TEXT).save(tasks);
+    }
+
+    /**
+     * Encodes records in binary format.
+     *
+     * @param encoder Non-null. Writes records to the given output.
+     * @return Encoded bytes.
+     */
+    private static byte[] encodeBinary(BinaryEncoder encoder) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try {
-            dataFile.createNewFile();
-            fw = new FileWriter(dataFile, false);
+            encoder.encode(new DataOutputStream(bytes));
         } catch (IOException e) {
-            throw new MeggyException(Resource.ERR_FILE_WRITE + Resource.ERR_IO);
-        } catch (SecurityException e) {
-            throw new MeggyException(Resource.ERR_FILE_WRITE + Resource.ERR_NO_FILE_ACCESS);
+            // ByteArrayOutputStream never throws IOException.
+            throw new UncheckedIOException(e);
         }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes string to data file. Creates data file if it did not previously exist. Data is forced to the storage
+     * device before returning.
+     * <p>
+     * When overwriting, the data is first written to a sibling temporary file, which then atomically replaces data
+     * file. Hence, the data file is intact with either old or new content should the program crash halfway.
+     *
+     * @param data   Non-null. The bytes to be written.
+     * @param append Whether to append to the end of file. Otherwise, the file is overwritten.
+     * @throws MeggyException If file IO throws {@link IOException}.
+     */
+    private void write(byte[] data, boolean append) throws MeggyException {
+        final Path dataPath = dataFile.toPath();
+        final Path tmpPath = dataPath.resolveSibling(dataPath.getFileName() + TMP_FILE_SUFFIX);
         try {
-            fw.write(tasks.recreateCmds());
-            fw.flush();
+            if (append) {
+                writeAndForce(dataPath, data, StandardOpenOption.APPEND);
+                return;
+            }
+            writeAndForce(tmpPath, data, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Files.move(tmpPath, dataPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, dataPath, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             throw new MeggyException(Resource.ERR_FILE_WRITE + Resource.ERR_IO);
-        } finally {
-            try {
-                fw.close();
-            } catch (IOException ignored) {
-            } // We can't do anything if file close fails.
+        } catch (SecurityException e) {
+            throw new MeggyException(Resource.ERR_FILE_WRITE + Resource.ERR_NO_FILE_ACCESS);
+        }
+    }
+
+    /**
+     * Writes bytes to file through {@link FileChannel} and forces it to storage device. Creates file if it did not
+     * previously exist.
+     *
+     * @param path Non-null. The file to write to.
+     * @param data Non-null. The bytes to be written.
+     * @param mode Non-null. Either {@code APPEND} or {@code TRUNCATE_EXISTING}.
+     */
+    private static void writeAndForce(Path path, byte[] data, StandardOpenOption mode) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            final ByteBuffer buf = ByteBuffer.wrap(data);
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line of text file, that is, the last line separator.
+     *
+     * @param ch   Non-null. The file.
+     * @param size Size of the file.
+     * @return Position right after the last line feed or carriage return, or 0 if there is none.
+     */
+    private static long getCompleteLinesEnd(FileChannel ch, long size) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long end = size;
+        while (end > 0) {
+            final long start = Math.max(0, end - buf.capacity());
+            buf.clear();
+            buf.limit((int) (end - start));
+            while (buf.hasRemaining() && ch.read(buf, start + buf.position()) >= 0) {
+                // Read until the block is filled.
+            }
+            for (int i = buf.position() - 1; i >= 0; i--) {
+                final byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
         }
+        return 0;
     }
 
     /**
-     * Reads content of file into the {@code tasks} list. If the file does not exist, process is skipped. Otherwise, all
-     * lines with syntax error are skipped.
+     * Reads content of file into the task list. If the file does not exist, process is skipped. Otherwise, all records
+     * with syntax error are skipped. Text files are replayed line by line through {@code parser}. Binary files are
+     * loaded without parsing, except for journaled command records.
+     * <p>
+     * In journal mode, a text file is always written in whole lines, so a last line without line separator is a record
+     * torn by a crash while appending. It is skipped as an error, as replaying it could make a different change.
      * <p>
      * All file {@link IOException}s are ignored as if the file did not exist.
      *
      * @param parser Non-null. The function that parses next line and make changes to the list.
+     * @param adder  Non-null. The function that appends a loaded task to the list.
      * @throws MeggyException If file has wrong format. File is potentially not a task list record.
      */
-    public void load(Consumer<String> parser) throws MeggyException {
+    public void load(Consumer<String> parser, Consumer<UserTask> adder) throws MeggyException {
+        load(parser, adder, null);
+    }
+
+    /**
+     * Reads content of file into the task list like {@code load}, except that task creation lines of text files are
+     * parsed in parallel. The resulting task list is the same.
+     *
+     * @param parser     Non-null. The function that parses next line and make changes to the list.
+     * @param adder      Non-null. The function that appends a loaded task to the list.
+     * @param taskParser Non-null. Thread-safe function that parses a task creation line into a task without changing
+     *                   the list. Returns {@code null} on lines of other commands.
+     * @throws MeggyException If file has wrong format. File is potentially not a task list record.
+     */
+    public void loadParallel(Consumer<String> parser, Consumer<UserTask> adder, Function<String, UserTask> taskParser)
+            throws MeggyException {
+        assert taskParser != null;
+        load(parser, adder, taskParser);
+    }
+
+    /**
+     * Reads content of file into the task list.
+     *
+     * @param taskParser Parses task creation lines of text files in parallel, or {@code null} to replay sequentially.
+     */
+    private void load(Consumer<String> parser, Consumer<UserTask> adder, Function<String, UserTask> taskParser)
+            throws MeggyException {
         assert parser != null;
-        final Scanner fileIn;
-        try {
-            fileIn = new Scanner(dataFile);
-        } catch (FileNotFoundException e) {
+        assert adder != null;
+        nRecords = 0;
+        boolean hasErr;
+        Format fileFormat = Format.TEXT;
+        String errMsg = "";
+        try (FileChannel ch = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer head = ByteBuffer.allocate(BinaryFormat.HEADER.length);
+            while (head.hasRemaining() && ch.read(head) >= 0) {
+                // Read until header is filled or end of file.
+            }
+            final byte[] headBytes = Arrays.copyOf(head.array(), head.position());
+            if (BinaryFormat.isBinary(headBytes)) {
+                fileFormat = Format.BINARY;
+                final byte version = headBytes[headBytes.length - 1];
+                if (version == BinaryFormat.VERSION) {
+                    final InputStream in = new BufferedInputStream(Channels.newInputStream(ch), READ_BUFFER_SIZE);
+                    hasErr = loadBinary(new DataInputStream(in), parser, adder);
+                } else {
+                    hasErr = true;
+                    errMsg = Resource.fmtErrFileVersion(version);
+                }
+            } else {
+                final long size = ch.size();
+                final long end = isJournaled ? getCompleteLinesEnd(ch, size) : size;
+                if (taskParser == null) {
+                    final MappedLineReader reader = new MappedLineReader(ch, CHARSET,
+                            MappedLineReader.DEFAULT_WINDOW_SIZE);
+                    reader.forEachLine(0, end, parser);
+                    nRecords = reader.getLineCount();
+                    hasErr = reader.getFailedLineCount() > 0;
+                } else {
+                    hasErr = loadTextParallel(ch, end, parser, adder, taskParser);
+                }
+                hasErr |= end < size;
+            }
+        } catch (IOException | SecurityException e) {
+            // Includes the case that file does not exist.
             return;
         }
+        // Unless file is intact and in the same format, rewrite the whole file upon next commit, as promised in the
+        // error message.
+        isSynced = !hasErr && fileFormat == format;
+        if (hasErr) {
+            throw new MeggyException(errMsg + Util.ERROR_WRONG_FILE_0 + dataFile.getAbsolutePath()
+                    + Util.ERROR_WRONG_FILE_1);
+        }
+    }
+
+    /**
+     * Replays text data file with task creation lines parsed in parallel. The file is split into chunks of whole lines,
+     * which are parsed on the common fork-join pool. Then all lines are applied in file order: parsed tasks through
+     * {@code adder} and other lines through {@code parser}.
+     * <p>
+     * At most twice as many chunks as the pool parallelism are parsed ahead of the ordered merge, so that memory use
+     * does not grow with file size.
+     *
+     * @param size Number of bytes from file start to load, which must end at a line boundary.
+     * @return Whether any line has error.
+     * @throws IOException If mapping or reading file fails.
+     */
+    private boolean loadTextParallel(FileChannel ch, long size, Consumer<String> parser, Consumer<UserTask> adder,
+            Function<String, UserTask> taskParser) throws IOException {
+        final MappedLineReader splitter = new MappedLineReader(ch, CHARSET, MappedLineReader.DEFAULT_WINDOW_SIZE);
+        final int maxChunksAhead = 2 * ForkJoinPool.getCommonPoolParallelism();
+        final ArrayDeque<ForkJoinTask<ArrayList<ParsedLine>>> chunks = new ArrayDeque<>();
+        long from = 0;
+        boolean hasErr = false;
+        while (from < size || !chunks.isEmpty()) {
+            while (from < size && chunks.size() < maxChunksAhead) {
+                final long chunkStart = from;
+                final long chunkEnd = size - from <= PARALLEL_LOAD_CHUNK_SIZE ? size
+                        : Math.min(size, splitter.nextLineStart(from + PARALLEL_LOAD_CHUNK_SIZE - 1));
+                chunks.add(ForkJoinPool.commonPool().submit(() -> {
+                    final ArrayList<ParsedLine> lines = new ArrayList<>();
+                    new MappedLineReader(ch, CHARSET, PARALLEL_LOAD_CHUNK_SIZE).forEachLine(chunkStart, chunkEnd,
+                            line -> lines.add(new ParsedLine(line, taskParser)));
+                    return lines;
+                }));
+                from = chunkEnd;
+            }
+            final ArrayList<ParsedLine> lines;
+            try {
+                lines = chunks.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+            }
+            for (ParsedLine line : lines) {
+                nRecords++;
+                try {
+                    line.apply(parser, adder);
+                } catch (MeggyException e) {
+                    hasErr = true;
+                }
+            }
+        }
+        return hasErr;
+    }
+
+    /**
+     * Reads binary data file record by record. Stops at the first truncated or unknown record.
+     *
+     * @param in Source, positioned right after file header.
+     * @return Whether any record has error.
+     */
+    private boolean loadBinary(DataInputStream in, Consumer<String> parser, Consumer<UserTask> adder) {
         boolean hasErr = false;
-        while (fileIn.hasNextLine()) {
+        while (true) {
             try {
-                parser.accept(fileIn.nextLine());
+                final int recType = in.read();
+                if (recType < 0) {
+                    return hasErr;
+                }
+                nRecords++;
+                BinaryFormat.readRecord(in, recType, parser, adder);
             } catch (MeggyException e) {
                 hasErr = true;
+            } catch (IOException e) {
+                return true;
             }
         }
-        fileIn.close();
-        if (hasErr) {
-            throw new MeggyException(Util.ERROR_WRONG_FILE_0 + dataFile.getAbsolutePath() + Util.ERROR_WRONG_FILE_1);
+    }
+
+    /** A line of text data file, with the task it creates parsed in advance. */
+    private static class ParsedLine {
+        /** The raw line, or {@code null} if a task is parsed from it. */
+        private final String line;
+        /** The task parsed from line, or {@code null} if the line does not create a task or has error. */
+        private final UserTask task;
+        /** The error of parsing task creation line, or {@code null} if there is none. */
+        private final MeggyException err;
+
+        /**
+         * Parses line.
+         *
+         * @param line       Non-null. The raw line.
+         * @param taskParser Non-null. Parses task creation lines. Returns {@code null} on other lines.
+         */
+        ParsedLine(String line, Function<String, UserTask> taskParser) {
+            UserTask task = null;
+            MeggyException err = null;
+            try {
+                task = taskParser.apply(line);
+            } catch (MeggyException e) {
+                err = e;
+            }
+            this.line = task == null ? line : null;
+            this.task = task;
+            this.err = err;
         }
+
+        /** Applies line to the task list as if it were replayed through {@code parser}. */
+        void apply(Consumer<String> parser, Consumer<UserTask> adder) throws MeggyException {
+            if (err != null) {
+                throw err;
+            }
+            if (task == null) {
+                parser.accept(line);
+            } else {
+                adder.accept(task);
+            }
+        }
+    }
+
+    /** Data file formats. */
+    public enum Format {
+        /** Human-readable list of commands. */
+        TEXT,
+        /** Compact {@link BinaryFormat}. */
+        BINARY
+    }
+
+    /** Function that writes binary records. */
+    private interface BinaryEncoder {
+        void encode(DataOutputStream out) throws IOException;
     }
 }
@@ -0,0 +1,154 @@
+package meggy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import meggy.task.UserTask;
+
+/**
+ * Trigram index of task descriptions, for substring search without scanning every task. Each indexed task has an
+ * integer id, and the ids of tasks containing each trigram are kept sorted, so results come out in id order.
+ * <p>
+ * A query is answered from the shortest posting list among its trigrams, then every candidate is verified with
+ * {@link String#contains}, so results are exact. Queries shorter than a trigram can't be looked up and must be answered
+ * by scanning.
+ * <p>
+ * Removal only forgets the task, leaving its ids in postings to be skipped by queries, since removing ids from a long
+ * posting takes linear time. Postings are rebuilt once stale ids outnumber live ones.
+ */
+class SubstringIndex {
+    /** Length of indexed substrings. */
+    static final int GRAM_LEN = 3;
+    /** Minimum number of ids in all postings for stale ids to be purged. */
+    private static final long COMPACT_MIN = 1 << 16;
+    /** Indexed tasks by id. */
+    private final HashMap<Integer, UserTask> tasks = new HashMap<>();
+    /** Ids of tasks whose description contains each trigram, in ascending order. */
+    private final HashMap<String, Posting> postings = new HashMap<>();
+    /** Number of ids in all postings. */
+    private long nEntries = 0;
+    /** Number of ids of indexed tasks in all postings. */
+    private long nLiveEntries = 0;
+
+    /**
+     * Indexes a task.
+     *
+     * @param id   Id not in use. Faster if greater than all ids in use.
+     * @param task Non-null. The task to be indexed.
+     */
+    void add(int id, UserTask task) {
+        assert task != null;
+        final UserTask old = tasks.put(id, task);
+        assert old == null;
+        final HashSet<String> grams = grams(task.desc);
+        for (String gram : grams) {
+            if (postings.computeIfAbsent(gram, k -> new Posting()).add(id)) {
+                nEntries++;
+            }
+        }
+        nLiveEntries += grams.size();
+    }
+
+    /**
+     * Removes a task from index.
+     *
+     * @param id Id of the indexed task.
+     */
+    void remove(int id) {
+        final UserTask task = tasks.remove(id);
+        assert task != null;
+        nLiveEntries -= grams(task.desc).size();
+        if (nEntries > COMPACT_MIN && nEntries > 2 * nLiveEntries) {
+            compact();
+        }
+    }
+
+    /** Rebuilds postings from indexed tasks only. */
+    private void compact() {
+        postings.clear();
+        nEntries = 0;
+        nLiveEntries = 0;
+        final int[] ids = tasks.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        final HashMap<Integer, UserTask> live = new HashMap<>(tasks);
+        tasks.clear();
+        for (int id : ids) {
+            add(id, live.get(id));
+        }
+    }
+
+    /** Removes all tasks from index. */
+    void clear() {
+        tasks.clear();
+        postings.clear();
+        nEntries = 0;
+        nLiveEntries = 0;
+    }
+
+    /**
+     * Finds tasks whose description contains the query.
+     *
+     * @param query Non-null. At least {@code GRAM_LEN} characters long.
+     * @param limit Non-negative. Maximum number of tasks to find.
+     * @return The first {@code limit} matching tasks in ascending order of id.
+     */
+    List<UserTask> find(String query, int limit) {
+        assert query != null && query.length() >= GRAM_LEN;
+        assert limit >= 0;
+        Posting shortest = null;
+        for (String gram : grams(query)) {
+            final Posting posting = postings.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            if (shortest == null || posting.size < shortest.size) {
+                shortest = posting;
+            }
+        }
+        assert shortest != null;
+        final ArrayList<UserTask> ans = new ArrayList<>();
+        for (int i = 0; i < shortest.size && ans.size() < limit; i++) {
+            final UserTask task = tasks.get(shortest.ids[i]);
+            if (task != null && task.desc.contains(query)) {
+                ans.add(task);
+            }
+        }
+        return ans;
+    }
+
+    /** @return Distinct substrings of length {@code GRAM_LEN}. */
+    private static HashSet<String> grams(String s) {
+        final HashSet<String> ans = new HashSet<>();
+        for (int i = GRAM_LEN; i <= s.length(); i++) {
+            ans.add(s.substring(i - GRAM_LEN, i));
+        }
+        return ans;
+    }
+
+    /** Growable sorted array of ids. Unboxed, as there are as many ids in all postings as trigrams in all tasks. */
+    private static class Posting {
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        /**
+         * Inserts id in order unless present. O(1) time complexity if id is the greatest.
+         *
+         * @return Whether id was absent.
+         */
+        boolean add(int id) {
+            final int idx = size == 0 || ids[size - 1] < id ? size : -Arrays.binarySearch(ids, 0, size, id) - 1;
+            if (idx < 0) {
+                return false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, idx, ids, idx + 1, size - idx);
+            ids[idx] = id;
+            size++;
+            return true;
+        }
+    }
+}
@@ -1,14 +1,62 @@
 package meggy;
 
+import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 import meggy.exception.MeggyIobException;
+import meggy.task.EventTask;
 import meggy.task.UserTask;
 
-/** {@link ArrayList} implementation of chat bot task list. Note that task deletion takes O(n) time. */
-public class TaskList extends ArrayList<UserTask> {
-    public TaskList() {
+/**
+ * Implementation of chat bot task list, backed by either an {@link ArrayList} or an {@link IndexedTreeList}. Task
+ * deletion takes O(n) time with the former and O(log n) time with the latter, at the cost of O(log n) random access.
+ * Hence this list does not implement {@link java.util.RandomAccess}; iterate it rather than index it in loops.
+ * <p>
+ * A hash index of all tasks is kept in sync with every mutation, so that {@code contains} takes O(1) time. A
+ * {@link SubstringIndex} of descriptions is kept in sync as well, so that {@code find} need not scan every task, and
+ * so are a {@link DueIndex} of unfinished tasks and an {@link EventIndex} of events, so that {@code findDue} and
+ * {@code findEvents} need not either. Task completion status must be changed through {@code setDone} of this list for
+ * the due index.
+ * <p>
+ * Not thread-safe. Concurrent reads are safe as long as no thread is writing, which {@link Meggy} ensures with a
+ * read-write lock.
+ */
+public class TaskList extends AbstractList<UserTask> {
+    /** Default distance between ids of adjacent tasks, so that inserted tasks can take ids in between. */
+    private static final int ID_GAP = 1 << 8;
+    /** The tasks in list order, with their ids in the indices by id. Ids are ascending along the list. */
+    private final List<Slot> store;
+    /** Number of occurrences of each task (by {@code equals}) in this list. */
+    private final HashMap<UserTask, Integer> counts = new HashMap<>();
+    /** Substring index of task descriptions. */
+    private final SubstringIndex descIndex = new SubstringIndex();
+    /** Due time index of unfinished tasks. */
+    private final DueIndex dueIndex = new DueIndex();
+    /** Interval tree of events. */
+    private final EventIndex eventIndex = new EventIndex();
+    /** Id of the next task appended. */
+    private int nextId = 0;
+    /** Distance between ids of adjacent appended tasks. */
+    private int idGap = ID_GAP;
+
+    /** @param backing Non-null. The data structure backing this list. */
+    public TaskList(Backing backing) {
         super();
+        assert backing != null;
+        store = backing == Backing.TREE ? new IndexedTreeList<>() : new ArrayList<>();
+    }
+
+    /** Creates {@link ArrayList}-backed task list. */
+    public TaskList() {
+        this(Backing.ARRAY);
     }
 
     /** @throws MeggyIobException If the parsed index is out of bounds with respect to this tasks list. */
@@ -19,17 +67,331 @@ public class TaskList extends ArrayList<UserTask> {
         }
     }
 
+    /** @inheritDoc */
+    @Override
+    public UserTask get(int idx) {
+        return store.get(idx).task;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    /** Checks whether an equivalent task is in this list. O(1) time complexity. */
+    @Override
+    public boolean contains(Object o) {
+        return counts.containsKey(o);
+    }
+
+    /** @inheritDoc */
+    @Override
+    public UserTask set(int idx, UserTask task) {
+        assert task != null;
+        final int id = store.get(idx).id;
+        final UserTask old = store.set(idx, new Slot(task, id)).task;
+        unindex(old);
+        index(task);
+        unindexId(id);
+        indexId(id, task);
+        return old;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public void add(int idx, UserTask task) {
+        assert task != null;
+        final int size = store.size();
+        final long prevId = idx == 0 ? Integer.MIN_VALUE : store.get(idx - 1).id;
+        final long nextId = idx == size ? (long) this.nextId + idGap : store.get(idx).id;
+        if (nextId - prevId <= 1 || nextId > Integer.MAX_VALUE) {
+            store.add(idx, new Slot(task, 0));
+            reindexIds(); // No id fits between the neighbours.
+        } else {
+            final int id = idx == size ? this.nextId : (int) ((prevId + nextId) / 2);
+            store.add(idx, new Slot(task, id));
+            indexId(id, task);
+            if (idx == size) {
+                this.nextId = (int) nextId;
+            }
+        }
+        modCount++;
+        index(task);
+    }
+
+    /** @inheritDoc */
+    @Override
+    public UserTask remove(int idx) {
+        final Slot old = store.remove(idx);
+        modCount++;
+        unindex(old.task);
+        unindexId(old.id);
+        return old.task;
+    }
+
+    /**
+     * Removes tasks at all indices in one pass. O(n) time complexity if backed by {@link ArrayList}, O(k log n) if
+     * backed by {@link IndexedTreeList}, where k is the number of removed tasks.
+     *
+     * @param idxs Non-null. Indices of tasks to be removed. All must be within bounds.
+     * @return Removed tasks in list order.
+     */
+    public List<UserTask> removeIdxs(BitSet idxs) {
+        assert idxs != null && idxs.length() <= size();
+        final ArrayList<UserTask> removed = new ArrayList<>(idxs.cardinality());
+        if (store instanceof ArrayList) {
+            final int size = store.size();
+            int nKept = 0;
+            for (int i = 0; i < size; i++) {
+                final Slot slot = store.get(i);
+                if (idxs.get(i)) {
+                    removed.add(slot.task);
+                    unindex(slot.task);
+                    unindexId(slot.id);
+                } else {
+                    store.set(nKept++, slot);
+                }
+            }
+            store.subList(nKept, size).clear();
+        } else {
+            for (int i = idxs.length() - 1; i >= 0; i = idxs.previousSetBit(i - 1)) {
+                final Slot slot = store.remove(i);
+                removed.add(slot.task);
+                unindex(slot.task);
+                unindexId(slot.id);
+            }
+            Collections.reverse(removed);
+        }
+        modCount++;
+        return removed;
+    }
+
+    /** @inheritDoc */
+    @Override
+    public void clear() {
+        store.clear();
+        counts.clear();
+        descIndex.clear();
+        dueIndex.clear();
+        eventIndex.clear();
+        nextId = 0;
+        idGap = ID_GAP;
+        modCount++;
+    }
+
+    /** Iterates in O(1) amortized time per task regardless of backing. Removal through the iterator is unsupported. */
+    @Override
+    public Iterator<UserTask> iterator() {
+        final Iterator<Slot> it = store.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public UserTask next() {
+                return it.next().task;
+            }
+        };
+    }
+
+    /**
+     * Finds all tasks with description containing the keyword. Uses the substring index unless the keyword is too
+     * short.
+     *
+     * @param substring Non-null. The keyword to look for.
+     * @return Matching tasks in list order.
+     */
+    public List<UserTask> find(String substring) {
+        return find(substring, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds tasks with description containing the keyword, stopping once enough are found.
+     *
+     * @param substring Non-null. The keyword to look for.
+     * @param limit     Non-negative. Maximum number of tasks to find.
+     * @return The first {@code limit} matching tasks in list order.
+     */
+    public List<UserTask> find(String substring, int limit) {
+        assert substring != null;
+        assert limit >= 0;
+        if (substring.length() >= SubstringIndex.GRAM_LEN) {
+            return descIndex.find(substring, limit);
+        }
+        final ArrayList<UserTask> ans = new ArrayList<>();
+        for (UserTask task : this) {
+            if (ans.size() >= limit) {
+                break;
+            }
+            if (task.desc.contains(substring)) {
+                ans.add(task);
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Updates the completion status of the task at index, keeping the due index in sync.
+     *
+     * @param idx    Index (starts with 0) of task.
+     * @param isDone The task's updated status.
+     * @return The updated task.
+     */
+    public UserTask setDone(int idx, boolean isDone) {
+        final Slot slot = store.get(idx);
+        if (slot.task.isDone() != isDone) {
+            dueIndex.remove(slot.id);
+            slot.task.setDone(isDone);
+            dueIndex.add(slot.id, slot.task);
+        }
+        return slot.task;
+    }
+
+    /**
+     * Finds unfinished tasks due within a range in O(log n + k) time. The due time of a deadline is its 'by' time, and
+     * that of an event is its start time. User-customized times are never in range.
+     *
+     * @param from            Start of range, or {@code null} if unbounded.
+     * @param isFromInclusive Whether tasks due exactly at {@code from} are in range.
+     * @param to              End of range, or {@code null} if unbounded. Not before {@code from}.
+     * @param isToInclusive   Whether tasks due exactly at {@code to} are in range.
+     * @return Tasks in range, in ascending order of due time and then list order.
+     */
+    public List<UserTask> findDue(LocalDateTime from, boolean isFromInclusive, LocalDateTime to,
+            boolean isToInclusive) {
+        return dueIndex.find(from, isFromInclusive, to, isToInclusive);
+    }
+
+    /** @return Unfinished tasks with user-customized due time in list order. */
+    public List<UserTask> findDueCustomized() {
+        return dueIndex.findCustomized();
+    }
+
+    /**
+     * Finds events that overlap a time range, including those that only touch it. Events with user-customized start
+     * time are never in range.
+     *
+     * @param from Non-null. Start of range.
+     * @param to   Non-null. End of range.
+     * @return Overlapping events in ascending order of start time and then list order.
+     */
+    public List<EventTask> findEvents(LocalDateTime from, LocalDateTime to) {
+        return eventIndex.find(from, to);
+    }
+
+    /**
+     * Finds unfinished events in this list that clash with an event. Each event is taken to occupy the time from its
+     * start up to but excluding its end, or just the instant it starts if it takes no time.
+     *
+     * @param event Non-null. The event in question. Need not be in this list.
+     * @return Clashing events other than {@code event} in ascending order of start time and then list order.
+     */
+    public List<EventTask> findConflicts(EventTask event) {
+        final List<EventTask> ans = eventIndex.findConflicts(event);
+        ans.removeIf(UserTask::isDone);
+        return ans;
+    }
+
+    /** Reassigns evenly spaced ids to all tasks in list order and rebuilds the indices by id. */
+    private void reindexIds() {
+        final ArrayList<UserTask> all = new ArrayList<>(this);
+        store.clear();
+        descIndex.clear();
+        dueIndex.clear();
+        eventIndex.clear();
+        idGap = (int) Math.max(1, Math.min(ID_GAP, Integer.MAX_VALUE / (2L * (all.size() + 1))));
+        nextId = 0;
+        for (UserTask task : all) {
+            store.add(new Slot(task, nextId));
+            indexId(nextId, task);
+            nextId += idGap;
+        }
+    }
+
+    /** Adds the task to the indices by id. */
+    private void indexId(int id, UserTask task) {
+        descIndex.add(id, task);
+        dueIndex.add(id, task);
+        eventIndex.add(id, task);
+    }
+
+    /** Removes the task from the indices by id. */
+    private void unindexId(int id) {
+        descIndex.remove(id);
+        dueIndex.remove(id);
+        eventIndex.remove(id);
+    }
+
+    /** Records one more occurrence of the task in hash index. */
+    private void index(UserTask task) {
+        counts.merge(task, 1, Integer::sum);
+    }
+
+    /** Records one less occurrence of the task in hash index. */
+    private void unindex(UserTask task) {
+        counts.computeIfPresent(task, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
     /** @return Printable string representation of this list. */
     @Override
     public String toString() {
+        return toString(this);
+    }
+
+    /** @return Printable string representation of tasks, numbered from 1 in iteration order. */
+    static String toString(Collection<? extends UserTask> tasks) {
         final StringBuilder ans = new StringBuilder();
-        int i = 0;
-        for (UserTask task : this) {
-            ans.append(Resource.fmtIdx(i++)).append(task).append('\n');
-        }
+        render(tasks, 0, ans::append);
         return ans.toString();
     }
 
+    /**
+     * Streams printable string representation of tasks in chunks of whole lines, so that the whole string need not be
+     * held in memory.
+     *
+     * @param tasks    Non-null. The tasks to render.
+     * @param firstIdx Index (starts with 0) to number the first task with. The rest are numbered consecutively.
+     * @param sink     Non-null. Accepts chunks in order. Each chunk is about {@code Util.STREAM_CHUNK_SIZE} long.
+     */
+    static void render(Iterable<? extends UserTask> tasks, int firstIdx, Consumer<String> sink) {
+        assert tasks != null;
+        assert sink != null;
+        final StringBuilder chunk = new StringBuilder();
+        int i = firstIdx;
+        for (UserTask task : tasks) {
+            chunk.append(Resource.fmtIdx(i++)).append(task).append('\n');
+            if (chunk.length() >= Util.STREAM_CHUNK_SIZE) {
+                sink.accept(chunk.toString());
+                chunk.setLength(0);
+            }
+        }
+        if (chunk.length() > 0) {
+            sink.accept(chunk.toString());
+        }
+    }
+
+    /** Data structures that can back a task list. */
+    public enum Backing {
+        /** {@link ArrayList}. O(1) random access and append, O(n) insertion and deletion. */
+        ARRAY,
+        /** {@link IndexedTreeList}. O(log n) random access, insertion and deletion. */
+        TREE
+    }
+
+    /** A task and its id in substring index. */
+    private static class Slot {
+        final UserTask task;
+        final int id;
+
+        Slot(UserTask task, int id) {
+            this.task = task;
+            this.id = id;
+        }
+    }
+
     /** @return The command list that would add all the tasks. Each task completion status is kept. */
     public String recreateCmds() {
         final StringBuilder ans = new StringBuilder();
@@ -1,5 +1,7 @@
 package meggy;
 
+import java.util.Map;
+
 import meggy.exception.Function;
 import meggy.task.DdlTask;
 import meggy.task.EventTask;
@@ -14,10 +16,57 @@ public final class Util {
     public static final Function<String, UserTask> DDL_NEW = DdlTask::of;
     /** Cached {@link EventTask} "constructor" functional object. */
     public static final Function<String, UserTask> EVENT_NEW = EventTask::of;
+    /** Task creation commands and the corresponding task "constructors". */
+    public static final Map<String, Function<String, UserTask>> TASK_CMD_TO_NEW = Map.of(
+            Resource.CMD_TODO, TODO_NEW,
+            Resource.CMD_DDL, DDL_NEW,
+            Resource.CMD_EVENT, EVENT_NEW
+    );
     /** Default time information if corresponding time keyword is absent in user input. */
     public static final String NO_FOUND = "N/A";
+    /**
+     * Data structure backing the task list of chatbot. Tree, so that deleting tasks from a long list takes O(log n)
+     * time per task rather than O(n).
+     */
+    public static final TaskList.Backing TASK_LIST_BACKING = TaskList.Backing.TREE;
     /** Task list data file. */
     public static final String DATA_FILE_PATH = "MeggyData.txt";
+    /** Minimum data file size in bytes for task creation lines to be parsed in parallel upon loading. */
+    public static final long PARALLEL_LOAD_MIN_SIZE = 1 << 20;
+    /** Default maximum number of parsed times cached by their input strings. */
+    public static final int TIME_CACHE_SIZE = 1 << 12;
+    /** Approximate number of characters of each chunk when streaming long responses. */
+    public static final int STREAM_CHUNK_SIZE = 1 << 13;
+    /** Maximum delay in milliseconds before a change is saved to data file in GUI. */
+    public static final long SAVE_INTERVAL_MILLIS = 500;
+    /** Number of unsaved changes that triggers an immediate save to data file in GUI. */
+    public static final int SAVE_MAX_PENDING = 1000;
+    /** Default port of headless TCP server. */
+    public static final int SERVER_PORT = 4096;
+    /** Default port of headless HTTP server. */
+    public static final int HTTP_PORT = 4097;
+    /** Maximum number of connections or requests served at once by headless servers. */
+    public static final int SERVER_MAX_CLIENTS = 1 << 10;
+    /** Maximum number of TCP connections waiting to be served. */
+    public static final int SERVER_BACKLOG = 1 << 8;
+    /** Maximum number of characters in a command line sent to TCP server. */
+    public static final int SERVER_MAX_LINE_LENGTH = 1 << 16;
+    /** Maximum number of bytes in a request body sent to HTTP server. */
+    public static final int HTTP_MAX_BODY_LENGTH = 1 << 20;
+    /** Milliseconds a TCP connection may stay idle before it is closed. */
+    public static final int SERVER_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    /** Maximum number of characters in a user name of multi-user server. */
+    public static final int USER_NAME_MAX_LENGTH = 64;
+    /** Maximum number of users whose task lists are kept in memory by multi-user server. */
+    public static final int TENANT_CAPACITY = 1 << 12;
+    /** Milliseconds a user's task list may stay unused in memory before it is saved and dropped. */
+    public static final long TENANT_IDLE_MILLIS = 10 * 60 * 1000;
+    /** Fraction of heap that, if still in use after garbage collection, calls for dropping users' task lists. */
+    public static final double TENANT_MAX_HEAP_FRACTION = 0.75;
+    /** Initial size in bytes of the buffer of batch input, grown when a single line does not fit. */
+    public static final int BATCH_BUFFER_SIZE = 1 << 16;
+    /** Size in characters of the buffer of batch output. */
+    public static final int BATCH_OUTPUT_BUFFER_SIZE = 1 << 16;
     public static final String ERROR_WRONG_FILE_0 = "This file does NOT look like my task list record: \"";
     public static final String ERROR_WRONG_FILE_1 = "\". If this file is important, please back up before executing any"
             + " more command because this file will be overwritten!";
@@ -40,6 +89,7 @@ public final class Util {
      */
     public static String fmrUsageOfIdxCmd(String cmd) {
         assert cmd != null;
-        return Resource.NOTIF_USAGE + cmd + " <idx: integer between 1 and list size (inclusive)>\n";
+        return Resource.NOTIF_USAGE + cmd + " <idx: integer between 1 and list size (inclusive)>\n"
+                + "    or " + cmd + " <comma-separated indices and ranges, e.g. 3-9,12>\n";
     }
 }
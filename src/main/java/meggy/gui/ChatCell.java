@@ -0,0 +1,33 @@
+package meggy.gui;
+
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+
+/** A recycled row of chat history. Keeps one {@link DialogBox} and rebinds it to whichever message it shows. */
+public class ChatCell extends ListCell<ChatMessage> {
+    /** Horizontal space taken by list view borders and scroll bar. */
+    private static final double LIST_INSETS = 20;
+    /** The dialog box reused for every message shown by this cell. */
+    private final DialogBox dialogBox = new DialogBox();
+
+    /** @param listView Non-null. The list view this cell belongs to. */
+    public ChatCell(ListView<ChatMessage> listView) {
+        assert listView != null;
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        // Zero pref width lets the cell shrink to the list view, so long lines wrap instead of scrolling sideways.
+        setPrefWidth(0);
+        dialogBox.maxWidthProperty().bind(listView.widthProperty().subtract(LIST_INSETS));
+    }
+
+    @Override
+    protected void updateItem(ChatMessage message, boolean isEmpty) {
+        super.updateItem(message, isEmpty);
+        if (isEmpty || message == null) {
+            setGraphic(null);
+            return;
+        }
+        dialogBox.setMessage(message);
+        setGraphic(dialogBox);
+    }
+}
@@ -0,0 +1,57 @@
+package meggy.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A message in chat history, or a part of a long message. Immutable. */
+public class ChatMessage {
+    /** Maximum number of lines of a message part, so that a long reply is virtualized part by part. */
+    static final int MAX_LINES = 40;
+    /** The text to display. */
+    public final String text;
+    /** Whether the message is from user rather than the chatbot. */
+    public final boolean isFromUser;
+    /** Whether this continues the previous part of the same message, so the avatar is not repeated. */
+    public final boolean isContinued;
+
+    private ChatMessage(String text, boolean isFromUser, boolean isContinued) {
+        this.text = text;
+        this.isFromUser = isFromUser;
+        this.isContinued = isContinued;
+    }
+
+    /**
+     * Splits a message into parts of at most {@code MAX_LINES} lines each.
+     *
+     * @param text       Non-null. The message text.
+     * @param isFromUser Whether the message is from user rather than the chatbot.
+     * @return Non-empty list of message parts in order.
+     */
+    public static List<ChatMessage> split(String text, boolean isFromUser) {
+        return split(text, isFromUser, false);
+    }
+
+    /**
+     * Splits a chunk of a message into parts of at most {@code MAX_LINES} lines each.
+     *
+     * @param text        Non-null. The chunk text.
+     * @param isFromUser  Whether the message is from user rather than the chatbot.
+     * @param isContinued Whether the chunk continues a previous chunk of the same message.
+     * @return Non-empty list of message parts in order.
+     */
+    public static List<ChatMessage> split(String text, boolean isFromUser, boolean isContinued) {
+        assert text != null;
+        final ArrayList<ChatMessage> ans = new ArrayList<>();
+        int partStart = 0;
+        int nLines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && ++nLines == MAX_LINES && i + 1 < text.length()) {
+                ans.add(new ChatMessage(text.substring(partStart, i), isFromUser, isContinued || !ans.isEmpty()));
+                partStart = i + 1;
+                nLines = 0;
+            }
+        }
+        ans.add(new ChatMessage(text.substring(partStart), isFromUser, isContinued || !ans.isEmpty()));
+        return ans;
+    }
+}
@@ -1,90 +1,70 @@
 package meggy.gui;
 
-import java.io.IOException;
-import java.util.Collections;
-
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
 import javafx.scene.shape.Circle;
 
 /**
- * A custom control using FXML that represents a dialog box consisting of an ImageView to represent the speaker's face
- * and a label containing text from the speaker.
+ * A custom control that represents a dialog box consisting of an ImageView to represent the speaker's face and a label
+ * containing text from the speaker. Reusable: one dialog box can show different messages in turn.
+ * <p>
+ * Nodes are built in code rather than loaded from FXML, as parsing FXML dominated the cost of each new dialog box.
  */
 public class DialogBox extends HBox {
+    /** Width and height of profile picture. */
+    private static final double PROF_PIC_SIZE = 50;
+    /** Space around message text. Immutable, hence shared. */
+    private static final Insets DIALOG_PADDING = new Insets(5);
     /** The label that contains query or response message. */
-    @FXML
-    private Label dialog;
+    private final Label dialog = new Label();
     /** The Profile picture. */
-    @FXML
-    private ImageView profilePic;
+    private final ImageView profilePic = new ImageView();
 
-    /**
-     * Constructor that uses FXML.
-     *
-     * @throws RuntimeException If an FXML file {@link IOException} occurs.
-     */
-    private DialogBox(String text, Image img) {
-        try {
-            FXMLLoader fxmlLoader = new FXMLLoader(MainWindow.class.getResource("/view/DialogBox.fxml"));
-            fxmlLoader.setController(this);
-            fxmlLoader.setRoot(this);
-            fxmlLoader.load();
-        } catch (IOException e) {
-            // If FXML file IO causes an error, program must crash.
-            throw new RuntimeException(e);
-        }
-        assert dialog != null;
-        assert profilePic != null;
+    /** Creates an empty dialog box. Shows nothing until a message is set. */
+    DialogBox() {
+        setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+        setAlignment(Pos.TOP_RIGHT);
 
-        dialog.setText(text);
+        dialog.setMinHeight(Region.USE_PREF_SIZE);
+        dialog.setWrapText(true);
+        dialog.setPadding(DIALOG_PADDING);
         if (GuiUtil.SPLAT_FONT != null) {
             dialog.setFont(GuiUtil.SPLAT_FONT);
         }
-        profilePic.setImage(img);
-        final double profPicRad = Math.max(profilePic.getFitHeight(), profilePic.getFitWidth()) / 2;
+
+        profilePic.setFitHeight(PROF_PIC_SIZE);
+        profilePic.setFitWidth(PROF_PIC_SIZE);
+        profilePic.setPickOnBounds(true);
+        profilePic.setPreserveRatio(true);
+        final double profPicRad = PROF_PIC_SIZE / 2;
         profilePic.setClip(new Circle(profPicRad, profPicRad, profPicRad));
-    }
 
-    /**
-     * Creates the user's dialog box.
-     *
-     * @param text Non-null. User's raw input.
-     * @return User's dialog box with avatar on the right
-     */
-    public static DialogBox ofUser(String text) {
-        assert text != null;
-        return new DialogBox(text, GuiUtil.USER_PROF_PIC);
+        getChildren().setAll(dialog, profilePic);
     }
 
     /**
-     * Creates the chatbot's dialog box.
+     * Shows a message. User's messages have avatar on the right, while the chatbot's have avatar on the left and
+     * orange background. Continued parts of a message leave the avatar blank.
      *
-     * @param text Non-null. Meggy's response.
-     * @return Meggy's dialog box with avatar on the right.
+     * @param message Non-null. The message to show.
      */
-    public static DialogBox ofMeggy(String text) {
-        assert text != null;
-        final DialogBox db = new DialogBox(text, GuiUtil.MEGGY_PROF_PIC);
-        db.flipToLeft();
-        db.setBackground(GuiUtil.MEGGY_DIALOG_BG);
-        return db;
-    }
-
-    /** Flips the dialog box such that the ImageView is on the left and text on the right. */
-    private void flipToLeft() {
-        final ObservableList<Node> tmp = FXCollections.observableArrayList(getChildren());
-        Collections.reverse(tmp);
-        getChildren().setAll(tmp);
-        setAlignment(Pos.TOP_LEFT);
+    void setMessage(ChatMessage message) {
+        assert message != null;
+        dialog.setText(message.text);
+        profilePic.setImage(message.isFromUser ? GuiUtil.USER_PROF_PIC : GuiUtil.MEGGY_PROF_PIC);
+        profilePic.setVisible(!message.isContinued);
+        if (message.isFromUser) {
+            getChildren().setAll(dialog, profilePic);
+            setAlignment(Pos.TOP_RIGHT);
+            setBackground(null);
+        } else {
+            getChildren().setAll(profilePic, dialog);
+            setAlignment(Pos.TOP_LEFT);
+            setBackground(GuiUtil.MEGGY_DIALOG_BG);
+        }
     }
 }
-
@@ -21,6 +21,8 @@ public class GuiUtil {
     static final Font SPLAT_FONT;
     /** Orange box with round corner. */
     static final Background MEGGY_DIALOG_BG;
+    /** Maximum number of messages kept in chat history. The oldest are dropped first. */
+    static final int MAX_CHAT_HISTORY = 10000;
     /** Corner radius of all dialog box. */
     private static final int DIALOG_BOX_CORNER_RADIUS = 20;
     /** Size of default image if preset image reading fails. */
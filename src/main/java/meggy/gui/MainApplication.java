@@ -14,7 +14,13 @@ import meggy.Util;
 /** A chatbot GUI using FXML. */
 public class MainApplication extends Application {
     /** The chatbot in use. */
-    private final Meggy meggy = new Meggy(new File(Util.DATA_FILE_PATH));
+    private final Meggy meggy = new Meggy(new File(Util.DATA_FILE_PATH), true);
+
+    /** Saves changes to file in the background, so that bursts of commands result in few file writes. */
+    @Override
+    public void init() {
+        meggy.enableBatchedSave(Util.SAVE_INTERVAL_MILLIS, Util.SAVE_MAX_PENDING);
+    }
 
     /**
      * Run the GUI. Creates views using FXML.
@@ -40,4 +46,10 @@ public class MainApplication extends Application {
             throw new RuntimeException(e);
         }
     }
+
+    /** Saves all unsaved changes before exit. */
+    @Override
+    public void stop() {
+        meggy.close();
+    }
 }
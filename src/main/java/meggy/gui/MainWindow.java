@@ -1,16 +1,16 @@
 package meggy.gui;
 
+import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.VBox;
 import meggy.Meggy;
-import meggy.exception.MeggyException;
+import meggy.Session;
 
 /**
  * Controller for gui.MainWindow. Provides the layout for the other controls.
@@ -19,31 +19,29 @@ public class MainWindow extends AnchorPane {
     /** The button to send message to the chatbot. */
     @FXML
     private Button sendButton;
-    /** The scroller to move through all dialogs. */
+    /** The virtualized view of chat history. Only visible messages have nodes, which are recycled on scrolling. */
     @FXML
-    private ScrollPane scrollPane;
-    /** The Vbox that contains all chat history in this session. */
-    @FXML
-    private VBox dialogContainer;
+    private ListView<ChatMessage> chatView;
     /** User's one-line input field. */
     @FXML
     private TextField userInput;
-    /** The chatbot currently being used. */
-    private Meggy meggy;
+    /** Runs commands off the JavaFX application thread, in input order. */
+    private Session session;
 
-    private ObservableList<Node> chatHistory;
+    /** All messages in this session, oldest first. At most {@code GuiUtil.MAX_CHAT_HISTORY} are kept. */
+    private final ObservableList<ChatMessage> chatHistory = FXCollections.observableArrayList();
 
-    /** WHAT DOES THIS DO? WHEN IS THIS CALLED? */
+    /** Called by {@link javafx.fxml.FXMLLoader} after all FXML fields are injected. */
     @FXML
     public void initialize() {
-        assert scrollPane != null;
-        assert dialogContainer != null;
+        assert chatView != null;
         assert sendButton != null;
         assert userInput != null;
         userInput.setFont(GuiUtil.SPLAT_FONT);
         sendButton.setFont(GuiUtil.SPLAT_FONT);
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
-        chatHistory = dialogContainer.getChildren();
+        chatView.setItems(chatHistory);
+        chatView.setCellFactory(ChatCell::new);
+        chatView.setFocusTraversable(false);
     }
 
     /**
@@ -54,40 +52,84 @@ public class MainWindow extends AnchorPane {
      * @param apWidthProperty  Non-null. The {@link AnchorPane}'s {@code widthProperty}.
      */
     public void setApDimProperty(ReadOnlyDoubleProperty apHeightProperty, ReadOnlyDoubleProperty apWidthProperty) {
-        scrollPane.prefHeightProperty().bind(apHeightProperty.subtract(41));
-        scrollPane.prefWidthProperty().bind(apWidthProperty);
+        chatView.prefHeightProperty().bind(apHeightProperty.subtract(41));
+        chatView.prefWidthProperty().bind(apWidthProperty);
         userInput.prefWidthProperty().bind(apWidthProperty.subtract(76));
-        dialogContainer.prefWidthProperty().bind(apWidthProperty);
     }
 
     /**
-     * Updates the current chatbot.
+     * Updates the current chatbot. Its task list is loaded on the session thread, so that the window shows up at once
+     * even if the data file is large. Input sent meanwhile runs once loading is done.
      *
      * @param m Non-null. The new chatbot.
      */
     public void setChatbot(Meggy m) {
         assert m != null;
-        meggy = m;
-        meggy.bindUi(s -> chatHistory.add(DialogBox.ofMeggy(s)));
+        session = new Session(m);
+        session.bindUi(s -> {
+            // Messages come from the session thread or the background save thread.
+            if (Platform.isFxApplicationThread()) {
+                showMessage(s, false);
+            } else {
+                Platform.runLater(() -> showMessage(s, false));
+            }
+        }).whenComplete((v, e) -> {
+            if (e != null) {
+                Platform.runLater(() -> showMessage(e.getMessage(), false));
+            }
+        });
     }
 
     /**
-     * Creates two dialog boxes, one echoing user input and the other containing Duke's reply and then appends them to
-     * the dialog container. Clears the user input after processing.
+     * Appends two messages to chat history, one echoing user input and the other containing Meggy's reply. Clears the
+     * user input immediately. The reply is appended chunk by chunk as the command runs on a background thread, so that
+     * slow commands do not freeze the window and long lists show up before they are fully rendered.
      */
     @FXML
     private void handleUserInput() {
         assert userInput != null;
-        assert dialogContainer != null;
         final String input = userInput.getText();
         userInput.clear();
-        chatHistory.add(DialogBox.ofUser(input));
-        String response;
-        try {
-            response = meggy.parseAndGetResponse(input);
-        } catch (MeggyException e) {
-            response = e.getMessage();
+        showMessage(input, true);
+        // Chunks come one at a time from the session thread.
+        final boolean[] isContinued = {false};
+        session.submit(input, chunk -> {
+            final boolean isChunkContinued = isContinued[0];
+            isContinued[0] = true;
+            Platform.runLater(() -> showMessage(chunk, false, isChunkContinued));
+        }).whenComplete((v, e) -> {
+            if (e != null) {
+                Platform.runLater(() -> showMessage(e.getMessage(), false));
+            }
+        });
+    }
+
+    /**
+     * Appends a message to chat history and scrolls to it. Drops the oldest messages beyond the history limit. Must be
+     * called on the JavaFX application thread.
+     *
+     * @param text       Non-null. The message text.
+     * @param isFromUser Whether the message is from user rather than the chatbot.
+     */
+    private void showMessage(String text, boolean isFromUser) {
+        showMessage(text, isFromUser, false);
+    }
+
+    /**
+     * Appends a message, or a chunk of a streamed message, to chat history and scrolls to it. Drops the oldest messages
+     * beyond the history limit. Must be called on the JavaFX application thread.
+     *
+     * @param text        Non-null. The message text.
+     * @param isFromUser  Whether the message is from user rather than the chatbot.
+     * @param isContinued Whether the text continues the previous message.
+     */
+    private void showMessage(String text, boolean isFromUser, boolean isContinued) {
+        assert text != null;
+        chatHistory.addAll(ChatMessage.split(text, isFromUser, isContinued));
+        final int nExtra = chatHistory.size() - GuiUtil.MAX_CHAT_HISTORY;
+        if (nExtra > 0) {
+            chatHistory.remove(0, nExtra);
         }
-        chatHistory.add(DialogBox.ofMeggy(response));
+        chatView.scrollTo(chatHistory.size() - 1);
     }
 }
@@ -0,0 +1,196 @@
+package meggy.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import meggy.Resource;
+import meggy.Session;
+
+/**
+ * Load generator for {@link MeggyServer}. Each client opens a connection of its own and sends a fixed mix of commands
+ * that add, mark, list, find, and query tasks, one at a time, waiting for each reply. Reports throughput and latency.
+ * <p>
+ * Run with arguments {@code HOST PORT CLIENTS COMMANDS_PER_CLIENT}.
+ */
+public class LoadClient {
+    /** Number of commands in the mix that each client repeats. */
+    private static final int MIX_SIZE = 8;
+
+    /** @deprecated Class with all methods static should not be initialized. */
+    private LoadClient() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: " + LoadClient.class.getName() + " HOST PORT CLIENTS COMMANDS_PER_CLIENT");
+            System.exit(2);
+        }
+        System.out.println(run(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3])));
+    }
+
+    /**
+     * Runs clients concurrently until each has sent its commands and read all replies.
+     *
+     * @param host    Non-null. Host of server.
+     * @param port    Port of server.
+     * @param nClient Positive. Number of clients.
+     * @param nCmd    Positive. Number of commands each client sends.
+     * @return Throughput and latency of all commands.
+     * @throws IOException If any connection fails or is closed before all replies are read.
+     */
+    public static Result run(String host, int port, int nClient, int nCmd) throws IOException {
+        assert host != null;
+        assert nClient > 0;
+        assert nCmd > 0;
+        final ExecutorService executor = Session.newDefaultExecutor(LoadClient.class.getSimpleName());
+        final long start = System.nanoTime();
+        final List<CompletableFuture<long[]>> clients = new ArrayList<>();
+        for (int iClient = 0; iClient < nClient; iClient++) {
+            final int i = iClient;
+            clients.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return runClient(host, port, i, nCmd);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        final long[] latencies = new long[nClient * nCmd];
+        int nError = 0;
+        try {
+            for (int i = 0; i < nClient; i++) {
+                final long[] clientLatencies = clients.get(i).join();
+                for (int j = 0; j < nCmd; j++) {
+                    // Negative latency marks an error reply.
+                    nError += clientLatencies[j] < 0 ? 1 : 0;
+                    latencies[i * nCmd + j] = Math.abs(clientLatencies[j]);
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return new Result(latencies, nError, System.nanoTime() - start);
+    }
+
+    /** @return Latency in nanoseconds of each command, negated if the reply is an error message. */
+    private static long[] runClient(String host, int port, int iClient, int nCmd) throws IOException {
+        final long[] latencies = new long[nCmd];
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            final Writer out = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < nCmd; i++) {
+                final long start = System.nanoTime();
+                out.write(fmtCmd(iClient, i));
+                out.write('\n');
+                out.flush();
+                final String reply = readReply(in);
+                if (reply == null) {
+                    throw new IOException("Connection closed before reply to command " + i);
+                }
+                final long latency = Math.max(1, System.nanoTime() - start);
+                latencies[i] = reply.startsWith(Resource.ERR_BASE) ? -latency : latency;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Formats a command of the mix a client sends.
+     *
+     * @param iClient Index of client.
+     * @param i       Index of command sent by the client.
+     * @return Command line without line terminator.
+     */
+    public static String fmtCmd(int iClient, int i) {
+        switch (i % MIX_SIZE) {
+        case 4:
+            return Resource.CMD_FIND + " load" + iClient + '-';
+        case 5:
+            return Resource.CMD_LIST + " 1 20";
+        case 6:
+            return Resource.CMD_DUE + ' ' + Resource.KW_AFTER + " 2000-01-01 0000";
+        case 7:
+            return Resource.CMD_MARK + " 1";
+        default:
+            return Resource.CMD_TODO + " load" + iClient + '-' + i;
+        }
+    }
+
+    /**
+     * Reads a reply of {@link MeggyServer}.
+     *
+     * @param in Non-null. Connection to the server.
+     * @return The reply lines, each followed by a line feed, or {@code null} if the connection ends before the reply
+     *         does.
+     * @throws IOException If reading fails.
+     */
+    public static String readReply(BufferedReader in) throws IOException {
+        assert in != null;
+        final StringBuilder ans = new StringBuilder();
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if (line.isEmpty()) {
+                return ans.toString();
+            }
+            ans.append(line).append('\n');
+        }
+        return null;
+    }
+
+    /** Throughput and latency of a load run. */
+    public static class Result {
+        /** Number of commands sent. */
+        public final int nCmd;
+        /** Number of replies that are error messages. */
+        public final int nError;
+        /** Nanoseconds from start of run to the last reply. */
+        public final long elapsedNanos;
+        /** Latencies in nanoseconds in ascending order. */
+        private final long[] latencies;
+
+        private Result(long[] latencies, int nError, long elapsedNanos) {
+            this.latencies = latencies;
+            Arrays.sort(latencies);
+            this.nCmd = latencies.length;
+            this.nError = nError;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @param percent Between 0 and 100 (inclusive).
+         * @return Latency in nanoseconds that {@code percent} percent of commands take at most.
+         */
+        public long percentileNanos(double percent) {
+            assert percent >= 0 && percent <= 100;
+            return latencies[Math.max(0, (int) Math.ceil(percent / 100 * nCmd) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d commands (%d errors) in %.3f s: %.0f commands/s, latency p50 %.1f us,"
+                            + " p99 %.1f us, max %.1f us", nCmd, nError, elapsedNanos / 1e9, nCmd * 1e9 / elapsedNanos,
+                    percentileNanos(50) / 1e3, percentileNanos(99) / 1e3, percentileNanos(100) / 1e3);
+        }
+    }
+}
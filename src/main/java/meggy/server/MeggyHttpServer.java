@@ -0,0 +1,178 @@
+package meggy.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import meggy.Resource;
+import meggy.Session;
+
+/**
+ * Minimal HTTP endpoint to a chatbot. A POST request to any path carries command lines in its UTF-8 body, which run in
+ * order, and the response body is their replies concatenated as plain text. Blank lines are skipped, and a body
+ * without any command is answered with status 400.
+ * <p>
+ * A server of many users' chatbots takes the user name as the path, such as {@code /alice}, and also answers a GET
+ * request to {@code /metrics} with cache and load statistics of the chatbots.
+ * <p>
+ * At most {@code maxRequests} requests are handled at once, each on a thread of its own, virtual if supported. Requests
+ * beyond that are turned away at once with status 503 rather than queued, so that clients back off under load.
+ */
+public class MeggyHttpServer implements Closeable {
+    /** Seconds clients are told to wait before retrying a request turned away. */
+    private static final String RETRY_AFTER_SECONDS = "1";
+    /** Path of statistics of a server of many users' chatbots. */
+    private static final String METRICS_PATH = "/metrics";
+    /** Runs commands of clients, or {@code null} if this server serves many users. */
+    private final Responder responder;
+    /** Runs commands of each user, or {@code null} if this server serves one chatbot. */
+    private final TenantManager tenants;
+    /** The underlying server. */
+    private final HttpServer server;
+    /** Handles requests. */
+    private final ExecutorService executor = Session.newDefaultExecutor(MeggyHttpServer.class.getSimpleName());
+    /** Free slots for requests. */
+    private final Semaphore slots;
+    /** Maximum number of bytes in a request body. */
+    private final int maxBodyLength;
+
+    /**
+     * Binds a server of one chatbot to an address. Call {@code start} to serve clients.
+     *
+     * @param responder     Non-null. Runs commands of clients.
+     * @param address       Non-null. Address to listen on. Port 0 means any free port.
+     * @param maxRequests   Positive. Maximum number of requests handled at once.
+     * @param maxBodyLength Positive. Maximum number of bytes in a request body.
+     * @throws IOException If the address can't be bound.
+     */
+    public MeggyHttpServer(Responder responder, InetSocketAddress address, int maxRequests, int maxBodyLength)
+            throws IOException {
+        this(responder, null, address, maxRequests, maxBodyLength);
+        assert responder != null;
+    }
+
+    /**
+     * Binds a server of many users' chatbots to an address. Call {@code start} to serve clients.
+     *
+     * @param tenants       Non-null. Runs commands of each user.
+     * @param address       Non-null. Address to listen on. Port 0 means any free port.
+     * @param maxRequests   Positive. Maximum number of requests handled at once.
+     * @param maxBodyLength Positive. Maximum number of bytes in a request body.
+     * @throws IOException If the address can't be bound.
+     */
+    public MeggyHttpServer(TenantManager tenants, InetSocketAddress address, int maxRequests, int maxBodyLength)
+            throws IOException {
+        this(null, tenants, address, maxRequests, maxBodyLength);
+        assert tenants != null;
+    }
+
+    private MeggyHttpServer(Responder responder, TenantManager tenants, InetSocketAddress address, int maxRequests,
+            int maxBodyLength) throws IOException {
+        assert address != null;
+        assert maxRequests > 0;
+        assert maxBodyLength > 0;
+        this.responder = responder;
+        this.tenants = tenants;
+        this.slots = new Semaphore(maxRequests);
+        this.maxBodyLength = maxBodyLength;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /** Starts handling requests on background threads, which keep running until this server is closed. */
+    public void start() {
+        server.start();
+    }
+
+    /** @return The port this server listens on. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests and closes the server once the requests being handled are done. */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            if (tenants != null && METRICS_PATH.equals(path) && "GET".equals(exchange.getRequestMethod())) {
+                send(exchange, HttpURLConnection.HTTP_OK, tenants.getStats().toString());
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                return;
+            }
+            final String user = tenants == null ? null : TenantManager.toUserName(path.substring(1));
+            if (tenants != null && user == null) {
+                send(exchange, HttpURLConnection.HTTP_NOT_FOUND, Resource.ERR_BASE + Resource.ERR_USER_NAME);
+                return;
+            }
+            if (!slots.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                send(exchange, HttpURLConnection.HTTP_UNAVAILABLE, Resource.ERR_BASE + Resource.ERR_SERVER_BUSY);
+                return;
+            }
+            try {
+                final String body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    send(exchange, HttpURLConnection.HTTP_ENTITY_TOO_LARGE, Resource.ERR_BASE + Resource.ERR_TOO_LONG);
+                    return;
+                }
+                if (body.isBlank()) {
+                    send(exchange, HttpURLConnection.HTTP_BAD_REQUEST, Resource.ERR_BASE + Resource.ERR_NO_CMD);
+                    return;
+                }
+                final StringBuilder reply = new StringBuilder();
+                for (String line : body.split("\r?\n")) {
+                    if (!line.isBlank()) {
+                        reply.append(tenants == null ? responder.respond(line) : tenants.respond(user, line));
+                    }
+                }
+                send(exchange, HttpURLConnection.HTTP_OK, reply.toString());
+            } finally {
+                slots.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** @return Request body decoded in UTF-8, or {@code null} if it is longer than {@code maxBodyLength} bytes. */
+    private String readBody(InputStream in) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1 << 13];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            if (body.size() + n > maxBodyLength) {
+                return null;
+            }
+            body.write(buffer, 0, n);
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
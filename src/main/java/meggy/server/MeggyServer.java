@@ -0,0 +1,292 @@
+package meggy.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import meggy.Resource;
+import meggy.Session;
+
+/**
+ * Headless server that lets many clients talk to one chatbot over a line-based TCP protocol in UTF-8. Each line a
+ * client sends is a command, and its reply is the response lines followed by an empty line. Empty lines within a
+ * response are dropped, so the first empty line always ends the reply. The connection is closed after the reply to
+ * 'bye' command.
+ * <p>
+ * A server of many users' chatbots expects the first line of each connection to be the user name, and replies with a
+ * greeting, or an error message before closing the connection if the name is invalid. The rest of the connection talks
+ * to that user's chatbot.
+ * <p>
+ * Each connection is served on a thread of its own, virtual if supported. At most {@code maxClients} connections are
+ * served at once. Further connections wait in the listen backlog of bounded length until a slot frees up, so that a
+ * flood of clients slows down accepting instead of exhausting threads or memory. A client that keeps its connection
+ * idle for too long is disconnected to free its slot.
+ */
+public class MeggyServer implements Closeable {
+    /** Runs commands of clients, or {@code null} if this server serves many users. */
+    private final Responder responder;
+    /** Runs commands of each user, or {@code null} if this server serves one chatbot. */
+    private final TenantManager tenants;
+    /** Accepts connections. */
+    private final ServerSocket serverSocket;
+    /** Serves connections. */
+    private final ExecutorService executor = Session.newDefaultExecutor(MeggyServer.class.getSimpleName());
+    /** Free slots for connections. */
+    private final Semaphore slots;
+    /** Maximum number of characters in a command line. */
+    private final int maxLineLength;
+    /** Milliseconds a connection may stay idle before it is closed. */
+    private final int idleTimeoutMillis;
+    /** Connections being served. */
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    /** Channel to report unexpected connection errors. */
+    private final Consumer<String> errorSender;
+    /** Accepts connections until this server is closed. */
+    private final Thread acceptor;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Binds a server of one chatbot to an address. Call {@code start} to serve clients.
+     *
+     * @param responder         Non-null. Runs commands of clients.
+     * @param address           Non-null. Address to listen on. Port 0 means any free port.
+     * @param maxClients        Positive. Maximum number of connections served at once.
+     * @param backlog           Positive. Maximum number of connections waiting to be served.
+     * @param maxLineLength     Positive. Maximum number of characters in a command line.
+     * @param idleTimeoutMillis Positive. Milliseconds a connection may stay idle before it is closed.
+     * @param errorSender       Non-null. Channel to report unexpected connection errors.
+     * @throws IOException If the address can't be bound.
+     */
+    public MeggyServer(Responder responder, InetSocketAddress address, int maxClients, int backlog, int maxLineLength,
+            int idleTimeoutMillis, Consumer<String> errorSender) throws IOException {
+        this(responder, null, address, maxClients, backlog, maxLineLength, idleTimeoutMillis, errorSender);
+        assert responder != null;
+    }
+
+    /**
+     * Binds a server of many users' chatbots to an address. Call {@code start} to serve clients.
+     *
+     * @param tenants           Non-null. Runs commands of each user.
+     * @param address           Non-null. Address to listen on. Port 0 means any free port.
+     * @param maxClients        Positive. Maximum number of connections served at once.
+     * @param backlog           Positive. Maximum number of connections waiting to be served.
+     * @param maxLineLength     Positive. Maximum number of characters in a command line.
+     * @param idleTimeoutMillis Positive. Milliseconds a connection may stay idle before it is closed.
+     * @param errorSender       Non-null. Channel to report unexpected connection errors.
+     * @throws IOException If the address can't be bound.
+     */
+    public MeggyServer(TenantManager tenants, InetSocketAddress address, int maxClients, int backlog,
+            int maxLineLength, int idleTimeoutMillis, Consumer<String> errorSender) throws IOException {
+        this(null, tenants, address, maxClients, backlog, maxLineLength, idleTimeoutMillis, errorSender);
+        assert tenants != null;
+    }
+
+    private MeggyServer(Responder responder, TenantManager tenants, InetSocketAddress address, int maxClients,
+            int backlog, int maxLineLength, int idleTimeoutMillis, Consumer<String> errorSender) throws IOException {
+        assert address != null;
+        assert maxClients > 0;
+        assert backlog > 0;
+        assert maxLineLength > 0;
+        assert idleTimeoutMillis > 0;
+        assert errorSender != null;
+        this.responder = responder;
+        this.tenants = tenants;
+        this.slots = new Semaphore(maxClients);
+        this.maxLineLength = maxLineLength;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.errorSender = errorSender;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address, backlog);
+        acceptor = new Thread(this::acceptAll, MeggyServer.class.getSimpleName());
+    }
+
+    /** Starts accepting connections on a background thread, which keeps running until this server is closed. */
+    public void start() {
+        acceptor.start();
+    }
+
+    /** @return The port this server listens on. */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Stops accepting connections and closes all connections being served. Commands already running may finish. */
+    @Override
+    public void close() {
+        isClosed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            errorSender.accept(e.getMessage());
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        executor.shutdown();
+    }
+
+    /** Accepts connections while there are free slots, until this server is closed. */
+    private void acceptAll() {
+        while (!isClosed) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                slots.release();
+                if (!isClosed) {
+                    errorSender.accept(e.getMessage());
+                }
+                continue;
+            }
+            sockets.add(socket);
+            try {
+                executor.execute(() -> {
+                    try {
+                        serve(socket);
+                    } finally {
+                        release(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) { // Closed after accepting.
+                release(socket);
+            }
+        }
+    }
+
+    /** Replies to each command line from a connection until it is closed by either side. */
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(idleTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            final Writer out = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            final StringBuilder line = new StringBuilder();
+            String user = null;
+            if (tenants != null) {
+                final int nRead = readLine(in, line);
+                if (nRead < 0) {
+                    return;
+                }
+                user = nRead <= maxLineLength ? TenantManager.toUserName(line.toString().trim()) : null;
+                if (user == null) {
+                    writeReply(out, Resource.ERR_BASE + Resource.ERR_USER_NAME);
+                    return;
+                }
+                writeReply(out, Resource.GREETINGS);
+            }
+            while (true) {
+                final int nRead = readLine(in, line);
+                if (nRead < 0) {
+                    return;
+                }
+                final boolean isExit = nRead <= maxLineLength && isExit(line);
+                writeReply(out, nRead <= maxLineLength ? respond(user, line.toString())
+                        : Resource.ERR_BASE + Resource.ERR_TOO_LONG);
+                if (isExit) {
+                    return;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // Idle for too long.
+        } catch (IOException e) {
+            if (!isClosed) {
+                errorSender.accept(e.getMessage());
+            }
+        }
+    }
+
+    /** @return Reply to a command line of user, who is {@code null} if this server serves one chatbot. */
+    private String respond(String user, String line) {
+        return tenants == null ? responder.respond(line) : tenants.respond(user, line);
+    }
+
+    /**
+     * Reads a line, keeping at most {@code maxLineLength + 1} characters of it so that long lines can't exhaust memory.
+     *
+     * @param in   Non-null. Where to read from.
+     * @param line Non-null. Holds the line read, without line terminator. Cleared first.
+     * @return Number of characters in line, or -1 if the stream ends before any character.
+     * @throws IOException If reading fails.
+     */
+    private int readLine(Reader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int len = 0;
+        int c = in.read();
+        if (c < 0) {
+            return -1;
+        }
+        for (; c >= 0 && c != '\n'; c = in.read()) {
+            if (len++ <= maxLineLength) {
+                line.append((char) c);
+            }
+        }
+        if (len > 0 && len <= maxLineLength + 1 && line.charAt(len - 1) == '\r') {
+            line.setLength(--len);
+        }
+        return len;
+    }
+
+    /** @return Whether line is 'bye' command. */
+    private static boolean isExit(CharSequence line) {
+        final String cmd = line.toString().trim();
+        final int len = Resource.CMD_EXIT.length();
+        return cmd.regionMatches(true, 0, Resource.CMD_EXIT, 0, len)
+                && (cmd.length() == len || Character.isWhitespace(cmd.charAt(len)));
+    }
+
+    /** Writes non-empty lines of response followed by an empty line, and flushes. */
+    private static void writeReply(Writer out, String response) throws IOException {
+        int from = 0;
+        while (from < response.length()) {
+            int to = response.indexOf('\n', from);
+            if (to < 0) {
+                to = response.length();
+            }
+            if (to > from) {
+                out.write(response, from, to - from);
+                out.write('\n');
+            }
+            from = to + 1;
+        }
+        out.write('\n');
+        out.flush();
+    }
+
+    /** Closes a connection and frees its slot. */
+    private void release(Socket socket) {
+        sockets.remove(socket);
+        closeQuietly(socket);
+        slots.release();
+    }
+
+    private void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            errorSender.accept(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package meggy.server;
+
+import java.util.function.Consumer;
+
+import meggy.Meggy;
+import meggy.exception.MeggyException;
+
+/**
+ * Runs commands of many remote clients against one chatbot, and gives each client the complete reply to its command.
+ * <p>
+ * The chatbot sends extra messages such as usage hints to a single channel. They are sent on the thread running the
+ * command, so they are routed to the reply of the command running on the current thread. Messages sent on other
+ * threads, such as save errors from the background save thread, go to a fallback channel instead.
+ */
+public class Responder implements Consumer<String> {
+    /** The chatbot to talk to. */
+    private final Meggy meggy;
+    /** Channel for extra messages not sent while running a command. */
+    private final Consumer<String> fallback;
+    /** Reply of the command running on each thread, or {@code null} if none is running. */
+    private final ThreadLocal<StringBuilder> replies = new ThreadLocal<>();
+
+    /**
+     * Binds the chatbot to this responder, which loads its task list from storage file.
+     *
+     * @param meggy    Non-null. The chatbot to talk to. Must not be bound to any UI.
+     * @param fallback Non-null. Channel for extra messages not sent while running a command.
+     */
+    public Responder(Meggy meggy, Consumer<String> fallback) {
+        assert meggy != null;
+        assert fallback != null;
+        this.meggy = meggy;
+        this.fallback = fallback;
+        meggy.bindUi(this);
+    }
+
+    /**
+     * Parses and executes a command line. Thread-safe.
+     *
+     * @param line Non-null. Client's raw input line.
+     * @return Extra messages sent while running the command, followed by the response or error message.
+     */
+    public String respond(String line) {
+        assert line != null;
+        final StringBuilder reply = new StringBuilder();
+        replies.set(reply);
+        try {
+            reply.append(meggy.parseAndGetResponse(line));
+        } catch (MeggyException e) {
+            reply.append(e.getMessage());
+        } finally {
+            replies.remove();
+        }
+        return reply.toString();
+    }
+
+    /** Routes an extra message of the chatbot. */
+    @Override
+    public void accept(String msg) {
+        final StringBuilder reply = replies.get();
+        if (reply == null) {
+            fallback.accept(msg);
+        } else {
+            reply.append(msg);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package meggy.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import meggy.LruCache;
+import meggy.Meggy;
+import meggy.Resource;
+import meggy.Util;
+
+/**
+ * Hosts a chatbot for each user, with a data file of its own in a directory. A user's chatbot is loaded on the user's
+ * first command, and kept resident in a bounded cache while in use. Resident chatbots are evicted, which saves their
+ * changes and lets their task lists be collected:
+ * <ul>
+ *     <li>least recently used first, when there are more than {@code capacity} of them,</li>
+ *     <li>when idle for {@code idleMillis} milliseconds, and</li>
+ *     <li>a quarter at a time, least recently used first, when the heap is still nearly full after garbage collection.
+ *     </li>
+ * </ul>
+ * An evicted chatbot finishes the commands already running on it before it is closed, and is reloaded from its data
+ * file only after it is closed, so that no change is lost. Changes of all chatbots are saved in batches on one shared
+ * background thread, which also closes evicted chatbots.
+ */
+public class TenantManager implements Closeable {
+    /** Extension of data files. */
+    private static final String DATA_FILE_EXTENSION = ".txt";
+    /** Directory of data files. */
+    private final File dir;
+    /** Resident chatbots by user name. */
+    private final LruCache<String, Tenant> cache;
+    /** Loads in progress by user name, so that each user's chatbot is loaded by one thread at a time. */
+    private final ConcurrentHashMap<String, CompletableFuture<Tenant>> loading = new ConcurrentHashMap<>();
+    /** Evicted chatbots not yet closed, by user name. */
+    private final ConcurrentHashMap<String, Tenant> closing = new ConcurrentHashMap<>();
+    /** Saves changes, closes evicted chatbots, and evicts idle chatbots. */
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+        final Thread t = new Thread(r, TenantManager.class.getSimpleName());
+        t.setDaemon(true);
+        return t;
+    });
+    /** Heap pools watched for memory pressure. */
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    /** Channel to report errors of chatbots outside commands, prefixed with user name. */
+    private final Consumer<String> errorSender;
+    /** Number of garbage collections when memory pressure was last relieved. */
+    private long lastReliefGcCount = -1;
+    private final AtomicLong nLoads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+    private final AtomicLong nEvictions = new AtomicLong();
+
+    /**
+     * Creates a manager of chatbots with data files in a directory. Starts watching for idle chatbots.
+     *
+     * @param dir             Non-null. Directory of data files. Created if absent.
+     * @param capacity        Positive. Maximum number of resident chatbots.
+     * @param idleMillis      Positive. Milliseconds a chatbot may stay idle before it is evicted.
+     * @param maxHeapFraction Between 0 and 1 (exclusive). Fraction of heap that, if still in use after garbage
+     *                        collection, calls for evicting chatbots.
+     * @param errorSender     Non-null. Channel to report errors of chatbots outside commands, such as failed saves.
+     */
+    public TenantManager(File dir, int capacity, long idleMillis, double maxHeapFraction,
+            Consumer<String> errorSender) {
+        assert dir != null;
+        assert capacity > 0;
+        assert idleMillis > 0;
+        assert maxHeapFraction > 0 && maxHeapFraction < 1;
+        assert errorSender != null;
+        dir.mkdirs();
+        this.dir = dir;
+        this.errorSender = errorSender;
+        cache = new LruCache<>(capacity, this::evict);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.scheduleWithFixedDelay(() -> evictIdle(idleMillis), idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * maxHeapFraction));
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    /**
+     * Normalizes a user name, which is case-insensitive, as data files may be on a case-insensitive file system.
+     *
+     * @param name Non-null. Raw user name.
+     * @return Lower-case user name, or {@code null} if it is empty, too long, or has characters other than letters,
+     *         digits, '-' and '_'.
+     */
+    public static String toUserName(String name) {
+        assert name != null;
+        if (name.isEmpty() || name.length() > Util.USER_NAME_MAX_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return null;
+            }
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses and executes a command line on a user's chatbot, loading it first if not resident. Thread-safe.
+     *
+     * @param user Non-null. User name normalized by {@code toUserName}.
+     * @param line Non-null. User's raw input line.
+     * @return Extra messages sent while running the command, followed by the response or error message.
+     */
+    public String respond(String user, String line) {
+        assert user != null && user.equals(toUserName(user));
+        assert line != null;
+        while (true) {
+            final String reply = lookUp(user).respond(line);
+            if (reply != null) {
+                return reply;
+            }
+            // Evicted between lookup and command. Load again once closed.
+        }
+    }
+
+    /** @return Current cache and load statistics. */
+    public Stats getStats() {
+        return new Stats(cache.size(), cache.getHitCount(), cache.getMissCount(), nLoads.get(), loadNanos.get(),
+                maxLoadNanos.get(), nEvictions.get());
+    }
+
+    /** Evicts and closes all resident chatbots, saving their changes, and stops the background thread. */
+    @Override
+    public void close() {
+        cache.evictWhile((user, tenant) -> true);
+        executor.shutdown();
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets a user's resident chatbot, loading it if absent. Threads missing the same user at once wait for one load,
+     * since a second copy loaded alongside could miss changes of the first one once stored.
+     *
+     * @return The chatbot, which may be evicted by the time it is returned.
+     */
+    private Tenant lookUp(String user) {
+        final Tenant cached = cache.get(user);
+        if (cached != null) {
+            return cached;
+        }
+        final CompletableFuture<Tenant> loaded = new CompletableFuture<>();
+        final CompletableFuture<Tenant> other = loading.putIfAbsent(user, loaded);
+        if (other != null) {
+            return other.join();
+        }
+        try {
+            // Loaded only if still absent, as another load may have finished since the lookup above.
+            Tenant ans = cache.peek(user);
+            if (ans == null) {
+                ans = load(user);
+                final Tenant raced = cache.putIfAbsent(user, ans);
+                assert raced == null : "Loads of a user are single-flight";
+            }
+            loaded.complete(ans);
+            return ans;
+        } catch (RuntimeException | Error e) {
+            loaded.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(user, loaded);
+        }
+    }
+
+    /** Loads a user's chatbot after the previous one of the user, if evicted, is closed. */
+    private Tenant load(String user) {
+        final Tenant evicted = closing.get(user);
+        if (evicted != null) {
+            evicted.awaitClosed();
+        }
+        final long start = System.nanoTime();
+        final Meggy meggy = new Meggy(new File(dir, user + DATA_FILE_EXTENSION), true);
+        final Responder responder = new Responder(meggy, msg -> {
+            if (!msg.equals(Resource.GREETINGS)) {
+                errorSender.accept(user + ": " + msg);
+            }
+        });
+        meggy.enableBatchedSave(Util.SAVE_INTERVAL_MILLIS, Util.SAVE_MAX_PENDING, executor);
+        final long nanos = System.nanoTime() - start;
+        nLoads.incrementAndGet();
+        loadNanos.addAndGet(nanos);
+        maxLoadNanos.accumulateAndGet(nanos, Math::max);
+        relieveMemory();
+        return new Tenant(meggy, responder);
+    }
+
+    /** Called by cache on every chatbot evicted, while holding its lock. Closes the chatbot in the background. */
+    private void evict(String user, Tenant tenant) {
+        nEvictions.incrementAndGet();
+        closing.put(user, tenant);
+        executor.execute(() -> {
+            tenant.close();
+            closing.remove(user, tenant);
+        });
+    }
+
+    /** Evicts chatbots idle for at least {@code idleMillis} milliseconds, and relieves memory pressure if any. */
+    private void evictIdle(long idleMillis) {
+        final long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        cache.evictWhile((user, tenant) -> tenant.lastUsedNanos - idleSince <= 0);
+        relieveMemory();
+    }
+
+    /**
+     * Evicts the least recently used quarter of resident chatbots if the heap is nearly full after garbage collection.
+     * Does so at most once per garbage collection, as memory freed by eviction is not seen until the next one.
+     */
+    private void relieveMemory() {
+        if (heapPools.stream().noneMatch(MemoryPoolMXBean::isCollectionUsageThresholdExceeded)) {
+            return;
+        }
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+        }
+        synchronized (this) {
+            if (gcCount == lastReliefGcCount) {
+                return;
+            }
+            lastReliefGcCount = gcCount;
+        }
+        final int[] nToEvict = {Math.max(1, cache.size() / 4)};
+        cache.evictWhile((user, tenant) -> nToEvict[0]-- > 0);
+    }
+
+    /** A resident or evicted chatbot. */
+    private static class Tenant {
+        private final Meggy meggy;
+        private final Responder responder;
+        /** Commands hold the read lock, and closing takes the write lock, so that it waits for running commands. */
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        /** Counted down once closed. */
+        private final CountDownLatch closed = new CountDownLatch(1);
+        /** Whether closed. Guarded by {@code lock}. */
+        private boolean isClosed = false;
+        /** Value of {@link System#nanoTime} at the last command. */
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        Tenant(Meggy meggy, Responder responder) {
+            this.meggy = meggy;
+            this.responder = responder;
+        }
+
+        /** @return Reply to the command, or {@code null} if this chatbot is closed. */
+        String respond(String line) {
+            lock.readLock().lock();
+            try {
+                if (isClosed) {
+                    return null;
+                }
+                lastUsedNanos = System.nanoTime();
+                return responder.respond(line);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Waits for running commands, then saves all changes and closes this chatbot. */
+        void close() {
+            lock.writeLock().lock();
+            try {
+                isClosed = true;
+                meggy.close();
+            } finally {
+                lock.writeLock().unlock();
+                closed.countDown();
+            }
+        }
+
+        /** Waits until this chatbot is closed, ignoring interrupts. */
+        void awaitClosed() {
+            boolean isInterrupted = false;
+            while (true) {
+                try {
+                    closed.await();
+                    break;
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Snapshot of cache and load statistics. */
+    public static class Stats {
+        /** Number of resident chatbots. */
+        public final int nResident;
+        /** Number of commands that found the chatbot resident. */
+        public final long nHits;
+        /** Number of commands that found the chatbot not resident. */
+        public final long nMisses;
+        /** Number of chatbots loaded. */
+        public final long nLoads;
+        /** Total nanoseconds spent loading chatbots. */
+        public final long loadNanos;
+        /** Longest nanoseconds spent loading a chatbot. */
+        public final long maxLoadNanos;
+        /** Number of chatbots evicted. */
+        public final long nEvictions;
+
+        private Stats(int nResident, long nHits, long nMisses, long nLoads, long loadNanos, long maxLoadNanos,
+                long nEvictions) {
+            this.nResident = nResident;
+            this.nHits = nHits;
+            this.nMisses = nMisses;
+            this.nLoads = nLoads;
+            this.loadNanos = loadNanos;
+            this.maxLoadNanos = maxLoadNanos;
+            this.nEvictions = nEvictions;
+        }
+
+        /** @return Fraction of commands that found the chatbot resident, or 0 if there is no command. */
+        public double getHitRate() {
+            final long nLookups = nHits + nMisses;
+            return nLookups == 0 ? 0 : (double) nHits / nLookups;
+        }
+
+        /** @return Mean milliseconds spent loading a chatbot, or 0 if none is loaded. */
+        public double getMeanLoadMillis() {
+            return nLoads == 0 ? 0 : loadNanos / 1e6 / nLoads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("resident %d, hit rate %.4f (%d hits, %d misses), loads %d (mean %.3f ms,"
+                            + " max %.3f ms), evictions %d\n", nResident, getHitRate(), nHits, nMisses, nLoads,
+                    getMeanLoadMillis(), maxLoadNanos / 1e6, nEvictions);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package meggy.task;
 
+import java.util.Objects;
+
 import meggy.MeggyTime;
 import meggy.Resource;
 import meggy.exception.MeggyException;
@@ -47,16 +49,27 @@ public class DdlTask extends UserTask {
         return new DdlTask(desc, due, args);
     }
 
+    /**
+     * Creates task from already parsed values. Factory method. The values are not checked against {@code args}.
+     *
+     * @param desc Non-null. Description string of task.
+     * @param due  Non-null. Due time.
+     * @param args Non-null. The line (command and extra space removed) that created this task.
+     */
+    public static DdlTask of(String desc, MeggyTime due, String args) throws MeggyException {
+        return new DdlTask(desc, due, args);
+    }
+
     /** @inheritDoc */
     @Override
-    public String recreateCmd() {
-        return Resource.CMD_DDL + ' ' + args;
+    String getCmd() {
+        return Resource.CMD_DDL;
     }
 
     /** @inheritDoc */
     @Override
-    public String toString() {
-        return LABEL + super.toString() + " (by: " + due + ')';
+    String render() {
+        return LABEL + renderStatusAndDesc() + " (by: " + due + ')';
     }
 
     /** Two {@link DdlTask} objects are equal iff they have same (non-null) description and due time. */
@@ -68,4 +81,10 @@ public class DdlTask extends UserTask {
         final DdlTask other = (DdlTask) o;
         return due.equals(other.due) && desc.equals(other.desc);
     }
+
+    /** Hash code consistent with {@code equals}. */
+    @Override
+    public int hashCode() {
+        return Objects.hash(DdlTask.class, desc, due);
+    }
 }
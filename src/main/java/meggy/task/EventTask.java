@@ -2,6 +2,7 @@ package meggy.task;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Objects;
 
 import meggy.MeggyTime;
 import meggy.Resource;
@@ -71,16 +72,28 @@ public class EventTask extends UserTask {
         return new EventTask(desc.trim(), MeggyTime.of(start), MeggyTime.of(end), args);
     }
 
+    /**
+     * Creates task from already parsed values. Factory method. The values are not checked against {@code args}.
+     *
+     * @param desc  Non-null. Parsed description string.
+     * @param start Non-null. Parsed start time.
+     * @param end   Non-null. Parsed end time.
+     * @param args  Non-null. The line (command and extra space removed) that created this task.
+     */
+    public static EventTask of(String desc, MeggyTime start, MeggyTime end, String args) throws MeggyException {
+        return new EventTask(desc, start, end, args);
+    }
+
     /** @inheritDoc */
     @Override
-    public String recreateCmd() {
-        return Resource.CMD_EVENT + ' ' + args;
+    String getCmd() {
+        return Resource.CMD_EVENT;
     }
 
     /** @inheritDoc */
     @Override
-    public String toString() {
-        return LABEL + super.toString() + " (from: " + start + " to: " + end + ')';
+    String render() {
+        return LABEL + renderStatusAndDesc() + " (from: " + start + " to: " + end + ')';
     }
 
     /** Two {@link EventTask} objects are equal iff they have same (non-null) description, due time, and start time. */
@@ -92,4 +105,10 @@ public class EventTask extends UserTask {
         final EventTask other = (EventTask) o;
         return start.equals(other.start) && end.equals(other.end) && desc.equals(other.desc);
     }
+
+    /** Hash code consistent with {@code equals}. */
+    @Override
+    public int hashCode() {
+        return Objects.hash(EventTask.class, desc, start, end);
+    }
 }
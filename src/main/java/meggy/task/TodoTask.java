@@ -16,14 +16,14 @@ public class TodoTask extends UserTask {
 
     /** @inheritDoc */
     @Override
-    public String recreateCmd() {
-        return Resource.CMD_TODO + ' ' + args;
+    String getCmd() {
+        return Resource.CMD_TODO;
     }
 
     /** @inheritDoc */
     @Override
-    public String toString() {
-        return LABEL + super.toString();
+    String render() {
+        return LABEL + renderStatusAndDesc();
     }
 
     /** Two {@link TodoTask} objects are equal iff they have same (non-null) description. */
@@ -31,4 +31,10 @@ public class TodoTask extends UserTask {
     public boolean equals(Object o) {
         return (o instanceof TodoTask) && desc.equals(((TodoTask) o).desc);
     }
+
+    /** Hash code consistent with {@code equals}. */
+    @Override
+    public int hashCode() {
+        return desc.hashCode();
+    }
 }
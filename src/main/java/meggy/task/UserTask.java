@@ -13,6 +13,10 @@ public abstract class UserTask {
     final String args;
     /** Task completion status. */
     private boolean isDone;
+    /** Cached string representation, or null if not rendered since the latest change of completion status. */
+    private String rendered = null;
+    /** Cached entry line that would create the task, or null if not generated yet. */
+    private String cmd = null;
 
     /**
      * Sets description and args value to the task.
@@ -53,22 +57,58 @@ public abstract class UserTask {
         return '/' + keyword + ' ';
     }
 
+    /** Gets the line (command and extra space removed) that created this task. */
+    public String getArgs() {
+        return args;
+    }
+
     /** Gets task completion status. */
     public boolean isDone() {
         return isDone;
     }
 
-    /** Updates task completion status. */
+    /** Updates task completion status. Cached string representation is dropped if the status changes. */
     public void setDone(boolean done) {
-        isDone = done;
+        if (isDone != done) {
+            isDone = done;
+            rendered = null;
+        }
+    }
+
+    /** Subclasses that override {@code equals} must override this method consistently. */
+    @Override
+    public abstract int hashCode();
+
+    /** @return Re-create the entry line that would create the task. Generated once and cached. */
+    public final String recreateCmd() {
+        String ans = cmd;
+        if (ans == null) {
+            ans = getCmd() + ' ' + args;
+            cmd = ans;
+        }
+        return ans;
     }
 
-    /** @return Re-create the entry line that would create the task. */
-    public abstract String recreateCmd();
+    /** @return The command that creates this type of task. */
+    abstract String getCmd();
 
-    /** @return The string representation of this task in text UI. */
+    /** @return The string representation of this task in text UI. Rendered once per completion status and cached. */
     @Override
-    public String toString() {
+    public final String toString() {
+        // Strings are immutable, so racing readers at worst render twice.
+        String ans = rendered;
+        if (ans == null) {
+            ans = render();
+            rendered = ans;
+        }
+        return ans;
+    }
+
+    /** @return The string representation of this task in text UI, rendered from scratch. */
+    abstract String render();
+
+    /** @return Completion status mark and description, the part of string representation common to all tasks. */
+    String renderStatusAndDesc() {
         return Util.parenthesize(isDone ? Resource.DONE_MK : ' ') + ' ' + desc;
     }
 }